@@ -1,28 +1,60 @@
 package Parser;
 
+import java.util.Arrays;
 import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
 import org.eclipse.jdt.core.dom.PackageDeclaration;
 
 public class ASTParserUtil {
     public static CompilationUnit parse(char[] classSource, String projectSourcePath, String jrePath) {
+        return parse(classSource, "", projectSourcePath, jrePath);
+    }
+
+    // unitName is the file path, so that bindings resolve the same way as in a batch parse
+    public static CompilationUnit parse(char[] classSource, String unitName, String projectSourcePath, String jrePath) {
+        return parse(classSource, unitName, projectSourcePath, jrePath, AnalysisTier.FULL_BINDINGS);
+    }
+
+    public static CompilationUnit parse(char[] classSource, String unitName, String projectSourcePath, String jrePath, AnalysisTier tier) {
+        ASTParser parser = newParser(projectSourcePath, jrePath, tier);
+        parser.setUnitName(unitName);
+        parser.setSource(classSource);
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    // Parses every file with one parser: the JRE and the source path are scanned once,
+    // bindings resolve across units, and each CompilationUnit goes to the requestor as soon as it is done
+    public static void parseBatch(String[] sourceFilePaths, String projectSourcePath, String jrePath, FileASTRequestor requestor) {
+        parseBatch(sourceFilePaths, projectSourcePath, jrePath, AnalysisTier.FULL_BINDINGS, requestor);
+    }
+
+    public static void parseBatch(String[] sourceFilePaths, String projectSourcePath, String jrePath, AnalysisTier tier, FileASTRequestor requestor) {
+        ASTParser parser = newParser(projectSourcePath, jrePath, tier);
+        String[] encodings = new String[sourceFilePaths.length];
+        Arrays.fill(encodings, "UTF-8");
+        parser.createASTs(sourceFilePaths, encodings, new String[0], requestor, null);
+    }
+
+    // Without bindings the parser never looks at the JRE or the other sources, so no environment is set
+    private static ASTParser newParser(String projectSourcePath, String jrePath, AnalysisTier tier) {
         ASTParser parser = ASTParser.newParser(AST.JLS4);
-        parser.setResolveBindings(true);
         parser.setKind(ASTParser.K_COMPILATION_UNIT);
-        parser.setBindingsRecovery(true);
         parser.setCompilerOptions(JavaCore.getOptions());
-        parser.setUnitName("");
-        String[] sources = { projectSourcePath };
-        String[] classpath = { jrePath };
-        parser.setEnvironment(classpath, sources, new String[] { "UTF-8" }, true);
-        parser.setSource(classSource);
-        return (CompilationUnit) parser.createAST(null);
+        if (tier.resolvesBindings()) {
+            parser.setResolveBindings(true);
+            parser.setBindingsRecovery(true);
+            String[] sources = { projectSourcePath };
+            String[] classpath = { jrePath };
+            parser.setEnvironment(classpath, sources, new String[] { "UTF-8" }, true);
+        }
+        return parser;
     }
 
     public static String extractPackageName(CompilationUnit parse) {
         PackageDeclaration packageDecl = parse.getPackage();
         return packageDecl != null ? packageDecl.getName().getFullyQualifiedName() : "[default]";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// On-disk store of per-file FileAnalysis facts keyed by the SHA-256 of each file's content.
+// One cache file per analyzed source root and tier; it is discarded whenever the JRE or the format changes.
+public class AnalysisCache {
+    private static final int FORMAT_VERSION = 2;
+
+    private static class Snapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        int version = FORMAT_VERSION;
+        String jrePath;
+        AnalysisTier tier;
+        HashMap<String, FileAnalysis> entries = new HashMap<>();
+    }
+
+    private final Path cacheFile;
+    private final String jrePath;
+    private final AnalysisTier tier;
+    private Snapshot snapshot;
+    private final List<FileAnalysis> replaced = new ArrayList<>();
+
+    private AnalysisCache(Path cacheFile, String jrePath, AnalysisTier tier, Snapshot snapshot) {
+        this.cacheFile = cacheFile;
+        this.jrePath = jrePath;
+        this.tier = tier;
+        this.snapshot = snapshot;
+    }
+
+    public static AnalysisCache load(String cacheDirectory, String projectSourcePath, String jrePath, AnalysisTier tier) {
+        String key = hash((new File(projectSourcePath).getAbsolutePath() + "\n" + tier.name()).getBytes(StandardCharsets.UTF_8));
+        Path cacheFile = Paths.get(cacheDirectory, key + ".ser");
+        Snapshot snapshot = null;
+        if (Files.isRegularFile(cacheFile)) {
+            try (InputStream in = Files.newInputStream(cacheFile);
+                 ObjectInputStream ois = new ObjectInputStream(in)) {
+                snapshot = (Snapshot) ois.readObject();
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                System.err.println("Ignoring unreadable analysis cache " + cacheFile + ": " + e);
+            }
+        }
+        if (snapshot == null || snapshot.version != FORMAT_VERSION || !jrePath.equals(snapshot.jrePath) || snapshot.tier != tier) {
+            snapshot = new Snapshot();
+            snapshot.jrePath = jrePath;
+            snapshot.tier = tier;
+        }
+        return new AnalysisCache(cacheFile, jrePath, tier, snapshot);
+    }
+
+    // Content hash of a file, with its line count taken from the same read
+    public record FileDigest(String hash, int lineCount) {}
+
+    public static FileDigest digestFile(String path) throws IOException {
+        MessageDigest digest = newDigest();
+        int lineCount = FileProcessor.scan(Paths.get(path), digest);
+        return new FileDigest(HexFormat.of().formatHex(digest.digest()), lineCount);
+    }
+
+    public static String hashFile(String path) throws IOException {
+        return digestFile(path).hash();
+    }
+
+    public static String hash(byte[] content) {
+        return HexFormat.of().formatHex(newDigest().digest(content));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Copies still-valid cached facts into results and returns the indexes of new or edited files.
+    // The previous facts of edited and deleted files are kept to find their dependents later.
+    public List<Integer> reuse(String[] sourceFilePaths, String[] hashes, FileAnalysis[] results) {
+        Set<String> current = new HashSet<>();
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < sourceFilePaths.length; i++) {
+            current.add(sourceFilePaths[i]);
+            FileAnalysis cached = snapshot.entries.get(sourceFilePaths[i]);
+            if (cached != null && hashes[i].equals(cached.contentHash)) {
+                results[i] = cached;
+            } else {
+                changed.add(i);
+                if (cached != null) replaced.add(cached);
+            }
+        }
+        for (Map.Entry<String, FileAnalysis> entry : snapshot.entries.entrySet()) {
+            if (!current.contains(entry.getKey())) replaced.add(entry.getValue());
+        }
+        return changed;
+    }
+
+    // Once the changed files are parsed again, returns the unchanged files whose facts may be stale:
+    // those calling into a type declared (before or now) by a changed or deleted file, and those with
+    // an unresolved call to a method name such a file declares. Their entries are cleared from results.
+    public List<Integer> dependents(FileAnalysis[] results, List<Integer> changed) {
+        List<FileAnalysis> touched = new ArrayList<>(replaced);
+        for (int index : changed) {
+            if (results[index] != null) touched.add(results[index]);
+        }
+        Set<String> types = new HashSet<>();
+        Set<String> methodNames = new HashSet<>();
+        for (FileAnalysis analysis : touched) {
+            types.addAll(analysis.classMethodCounts.keySet());
+            for (List<MetricsCollector.MethodInfo> methods : analysis.classMethodLineCounts.values()) {
+                for (MetricsCollector.MethodInfo method : methods) {
+                    methodNames.add(method.methodName);
+                }
+            }
+        }
+
+        Set<Integer> changedSet = new HashSet<>(changed);
+        List<Integer> dependents = new ArrayList<>();
+        if (types.isEmpty() && methodNames.isEmpty()) return dependents;
+        for (int i = 0; i < results.length; i++) {
+            if (!changedSet.contains(i) && results[i] != null && dependsOn(results[i], types, methodNames)) {
+                results[i] = null;
+                dependents.add(i);
+            }
+        }
+        return dependents;
+    }
+
+    private static boolean dependsOn(FileAnalysis analysis, Set<String> types, Set<String> methodNames) {
+        for (List<String> callees : analysis.methodCallGraph.values()) {
+            for (String callee : callees) {
+                int lastDot = callee.lastIndexOf('.');
+                if (lastDot <= 0) continue;
+                if (callee.startsWith("[unresolved].")) {
+                    if (methodNames.contains(callee.substring(lastDot + 1))) return true;
+                } else if (types.contains(callee.substring(0, lastDot))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public void save(FileAnalysis[] results) throws IOException {
+        Snapshot updated = new Snapshot();
+        updated.jrePath = jrePath;
+        updated.tier = tier;
+        for (FileAnalysis analysis : results) {
+            if (analysis != null && analysis.contentHash != null) updated.entries.put(analysis.filePath, analysis);
+        }
+        snapshot = updated;
+
+        Files.createDirectories(cacheFile.getParent());
+        Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp);
+             ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(updated);
+        }
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
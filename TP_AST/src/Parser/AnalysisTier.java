@@ -0,0 +1,31 @@
+package Parser;
+
+// How much work the JDT front end does per file. Metrics never need bindings; the call graph can be
+// approximated from a project-wide name index, or resolved exactly with full binding resolution.
+public enum AnalysisTier {
+    // parses without bindings and records no calls: counts, sizes and parameters only
+    METRICS_ONLY("Metrics only"),
+    // parses without bindings; callees are resolved afterwards by name against the project's declarations
+    SYNTACTIC_CALLS("Syntactic call graph"),
+    // the original analysis: bindings and binding recovery on, callees resolved by JDT
+    FULL_BINDINGS("Full bindings");
+
+    private final String label;
+
+    AnalysisTier(String label) {
+        this.label = label;
+    }
+
+    public boolean resolvesBindings() {
+        return this == FULL_BINDINGS;
+    }
+
+    public boolean buildsCallGraph() {
+        return this != METRICS_ONLY;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,136 @@
+package Parser;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs a long analysis on a worker thread while a progress window shows the current phase and the
+// files done out of total. Cancel interrupts the worker. The result is handed to onSuccess on the EDT;
+// failures are reported in a dialog, cancellation is silent. onFinished runs on the EDT in every case,
+// once the worker has returned: after a cancel the window stays up until the task has stopped.
+public class BackgroundAnalysis<T> extends SwingWorker<T, BackgroundAnalysis.Progress> {
+
+    @FunctionalInterface
+    public interface Task<T> {
+        T run(ProgressListener progress) throws Exception;
+    }
+
+    record Progress(String phase, int done, int total) {}
+
+    private final Component owner;
+    private final String title;
+    private final Task<T> task;
+    private final Consumer<T> onSuccess;
+    private final Runnable onFinished;
+    private final JDialog dialog;
+    private final JLabel phaseLabel = new JLabel("Starting...");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final AtomicBoolean started = new AtomicBoolean();
+    // the worker returning and done() being called, in either order; finished() runs after both
+    private final AtomicInteger arrivals = new AtomicInteger();
+
+    private BackgroundAnalysis(Component owner, String title, Task<T> task, Consumer<T> onSuccess, Runnable onFinished) {
+        this.owner = owner;
+        this.title = title;
+        this.task = task;
+        this.onSuccess = onSuccess;
+        this.onFinished = onFinished;
+
+        // modeless, so the windows already open stay usable while the analysis runs
+        Window window = owner instanceof Window ? (Window) owner : owner != null ? SwingUtilities.getWindowAncestor(owner) : null;
+        dialog = new JDialog(window, title, Dialog.ModalityType.MODELESS);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        progressBar.setIndeterminate(true);
+        progressBar.setStringPainted(true);
+        progressBar.setString("");
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> {
+            phaseLabel.setText("Cancelling...");
+            cancelButton.setEnabled(false);
+            cancel(true);
+        });
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(cancelButton);
+        panel.add(phaseLabel, BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.add(panel);
+        dialog.setSize(420, 140);
+        dialog.setLocationRelativeTo(owner);
+    }
+
+    public static <T> BackgroundAnalysis<T> start(Component owner, String title, Task<T> task, Consumer<T> onSuccess) {
+        return start(owner, title, task, onSuccess, null);
+    }
+
+    public static <T> BackgroundAnalysis<T> start(Component owner, String title, Task<T> task, Consumer<T> onSuccess, Runnable onFinished) {
+        BackgroundAnalysis<T> analysis = new BackgroundAnalysis<>(owner, title, task, onSuccess, onFinished);
+        analysis.dialog.setVisible(true);
+        analysis.execute();
+        return analysis;
+    }
+
+    @Override
+    protected T doInBackground() throws Exception {
+        // cancelled before it could start: done() finishes on its own
+        if (!started.compareAndSet(false, true)) return null;
+        try {
+            return task.run((phase, done, total) -> publish(new Progress(phase, done, total)));
+        } finally {
+            if (arrivals.incrementAndGet() == 2) SwingUtilities.invokeLater(this::finished);
+        }
+    }
+
+    @Override
+    protected void process(List<Progress> chunks) {
+        if (isCancelled()) return;
+        // only the latest state matters
+        Progress progress = chunks.get(chunks.size() - 1);
+        phaseLabel.setText(progress.phase());
+        if (progress.total() > 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(progress.total());
+            progressBar.setValue(progress.done());
+            progressBar.setString(progress.done() + " / " + progress.total());
+        } else {
+            progressBar.setIndeterminate(true);
+            progressBar.setString("");
+        }
+    }
+
+    // Called at once by cancel(), while the task may still be winding down on the worker
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            if (started.compareAndSet(false, true)) arrivals.incrementAndGet();
+            if (arrivals.incrementAndGet() == 2) finished();
+            return;
+        }
+        dialog.dispose();
+        try {
+            onSuccess.accept(get());
+        } catch (CancellationException | InterruptedException e) {
+            // cancelled by the user
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (!(cause instanceof CancellationException)) {
+                cause.printStackTrace();
+                JOptionPane.showMessageDialog(owner, title + " failed: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        } finally {
+            if (arrivals.incrementAndGet() == 2) finished();
+        }
+    }
+
+    private void finished() {
+        dialog.dispose();
+        if (onFinished != null) onFinished.run();
+    }
+}
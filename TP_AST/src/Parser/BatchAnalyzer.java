@@ -0,0 +1,333 @@
+package Parser;
+
+import TP2.CallGraph;
+import TP2.CouplingGraph;
+import TP2.CouplingMatrix;
+import TP2.Linkage;
+import TP2.LouvainClustering;
+import TP2.ModuleIdentifier;
+import TP2.PartitionedClustering;
+import TP2.SpoonCallCache;
+import TP2.SpoonCallExtractor;
+import TP2.SymbolTable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Headless entry point: analyzes a source tree with JDT or Spoon and writes the results to an output
+// directory as metrics.json, calls.csv, coupling.csv and modules.json. Never touches Swing or AWT.
+public class BatchAnalyzer {
+    private static final String USAGE = String.join("\n",
+            "Usage: java Parser.BatchAnalyzer --src <dir> [options]",
+            "  --src <dir>           source root to analyze (required)",
+            "  --jre <dir>           JRE/JDK used to resolve bindings (default: the running JVM)",
+            "  --frontend jdt|spoon  analysis front end (default: jdt)",
+            "  --tier <tier>         metrics-only | syntactic-calls | full-bindings (default: full-bindings, JDT only)",
+            "  --threads <n>         parser threads (default: available processors)",
+            "  --cache <dir>         reuse per-file results from this cache directory",
+            "  --method hac|louvain  module identification: HAC cut at --cp, or Louvain modularity (default: hac)",
+            "  --cp <value>          coupling threshold passed to module identification (default: 0.02)",
+            "  --linkage <linkage>   single | complete | average | ward (default: average)",
+            "  --partition <groups>  none | package | component: run HAC per group in parallel, then merge (default: none)",
+            "  --out <dir>           output directory (default: analysis-out)",
+            "  --skip-modules        do not run module identification",
+            "  --verbose             report the analysis phases, cache reuse included, on standard error");
+
+    private String src;
+    private String jre = System.getProperty("java.home");
+    private String frontend = "jdt";
+    private AnalysisTier tier = AnalysisTier.FULL_BINDINGS;
+    private int threads = ParserConfig.THREAD_COUNT;
+    private String cacheDirectory;
+    private String method = "hac";
+    private double cp = 0.02;
+    private Linkage linkage = Linkage.AVERAGE;
+    private PartitionedClustering.Partition partition;
+    private Path out = Paths.get("analysis-out");
+    private boolean skipModules = false;
+    private boolean verbose = false;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        BatchAnalyzer analyzer = new BatchAnalyzer();
+        try {
+            analyzer.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            analyzer.run();
+        } catch (Exception e) {
+            System.err.println("Analysis failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--src" -> src = value(args, ++i);
+                case "--jre" -> jre = value(args, ++i);
+                case "--frontend" -> {
+                    frontend = value(args, ++i).toLowerCase(Locale.ROOT);
+                    if (!frontend.equals("jdt") && !frontend.equals("spoon")) {
+                        throw new IllegalArgumentException("Unknown frontend: " + frontend);
+                    }
+                }
+                case "--tier" -> {
+                    String name = value(args, ++i);
+                    try {
+                        tier = AnalysisTier.valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown tier: " + name);
+                    }
+                }
+                case "--threads" -> threads = Integer.parseInt(value(args, ++i));
+                case "--cache" -> cacheDirectory = value(args, ++i);
+                case "--method" -> {
+                    method = value(args, ++i).toLowerCase(Locale.ROOT);
+                    if (!method.equals("hac") && !method.equals("louvain")) {
+                        throw new IllegalArgumentException("Unknown method: " + method);
+                    }
+                }
+                case "--cp" -> cp = Double.parseDouble(value(args, ++i));
+                case "--linkage" -> {
+                    String name = value(args, ++i);
+                    try {
+                        linkage = Linkage.valueOf(name.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown linkage: " + name);
+                    }
+                }
+                case "--partition" -> {
+                    String name = value(args, ++i);
+                    try {
+                        partition = name.equalsIgnoreCase("none") ? null
+                                : PartitionedClustering.Partition.valueOf(name.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown partition: " + name);
+                    }
+                }
+                case "--out" -> out = Paths.get(value(args, ++i));
+                case "--skip-modules" -> skipModules = true;
+                case "--verbose" -> verbose = true;
+                case "--help", "-h" -> {
+                    System.out.println(USAGE);
+                    System.exit(0);
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (src == null) throw new IllegalArgumentException("Missing --src");
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private void run() throws Exception {
+        Files.createDirectories(out);
+        long start = System.nanoTime();
+        CouplingMatrix matrix;
+
+        if (frontend.equals("spoon")) {
+            matrix = runSpoon();
+        } else {
+            matrix = runJdt();
+        }
+        writeCoupling(matrix);
+        if (!skipModules) {
+            writeModules(method.equals("louvain")
+                    ? LouvainClustering.identifyModules(matrix, 1.0, threads)
+                    : partition != null
+                    ? PartitionedClustering.build(matrix, linkage, partition, threads).cutAt(cp)
+                    : ModuleIdentifier.identifyModules(matrix, cp, linkage));
+        }
+        System.err.printf(Locale.ROOT, "Analyzed %s with %s in %.1f s, results in %s%n", src,
+                frontend.equals("spoon") ? "Spoon" : "JDT (" + tier + ")", (System.nanoTime() - start) / 1e9, out.toAbsolutePath());
+    }
+
+    private CouplingMatrix runJdt() throws IOException {
+        ParserLogic parserLogic = new ParserLogic(src, jre, threads, tier);
+        if (cacheDirectory != null) parserLogic.setCacheDirectory(cacheDirectory);
+        parserLogic.setProgressListener(progress());
+        parserLogic.parseProject();
+
+        CallGraph callGraph = parserLogic.getCallGraph();
+        long resolvedCalls = writeCalls(callGraph);
+        writeJdtMetrics(parserLogic, resolvedCalls);
+        return CouplingGraph.buildCouplingMatrix(callGraph);
+    }
+
+    private CouplingMatrix runSpoon() throws IOException {
+        CallGraph callGraph;
+        int classes;
+        if (cacheDirectory != null) {
+            SpoonCallCache cache = SpoonCallCache.load(cacheDirectory, src);
+            callGraph = cache.extract(threads, progress());
+            classes = cache.getTypeCount();
+        } else {
+            var model = SpoonCallExtractor.buildModel(src);
+            callGraph = SpoonCallExtractor.extractCallGraph(model, threads);
+            classes = model.getAllTypes().size();
+        }
+        long calls = writeCalls(callGraph);
+        try (BufferedWriter writer = newWriter("metrics.json")) {
+            writer.write("{\n  \"frontend\": \"spoon\",\n  \"source\": " + json(src) + ",\n");
+            writer.write("  \"totals\": {\"classes\": " + classes + ", \"calls\": " + calls + "}\n}\n");
+        }
+        return CouplingGraph.buildCouplingMatrix(callGraph);
+    }
+
+    // Each phase once, as it starts; the per-file updates are left out
+    private ProgressListener progress() {
+        if (!verbose) return ProgressListener.NONE;
+        return (phase, done, total) -> {
+            if (done == 0) System.err.println(phase);
+        };
+    }
+
+    // One line per distinct caller/callee pair with its number of call sites; returns the resolved call count
+    private long writeCalls(CallGraph callGraph) throws IOException {
+        SymbolTable symbols = callGraph.symbols();
+        long resolvedCalls = 0;
+        try (BufferedWriter writer = newWriter("calls.csv")) {
+            writer.write("caller,callee,count\n");
+            for (int m = 0; m < callGraph.methodCount(); m++) {
+                String caller = csv(symbols.methodName(m));
+                for (int e = callGraph.rowStart(m); e < callGraph.rowEnd(m); e++) {
+                    int callee = callGraph.callee(e);
+                    writer.write(caller + "," + csv(symbols.methodName(callee)) + "," + callGraph.multiplicity(e) + "\n");
+                    if (!symbols.isUnresolved(symbols.classOfMethod(callee))) resolvedCalls += callGraph.multiplicity(e);
+                }
+            }
+        }
+        return resolvedCalls;
+    }
+
+    private void writeJdtMetrics(ParserLogic parserLogic, long resolvedCalls) throws IOException {
+        int classes = parserLogic.getTotalClasses();
+        int methods = parserLogic.getTotalMethods();
+        try (BufferedWriter writer = newWriter("metrics.json")) {
+            writer.write("{\n  \"frontend\": \"jdt\",\n  \"tier\": " + json(tier.name()) + ",\n  \"source\": " + json(src) + ",\n");
+            writer.write("  \"totals\": {\"classes\": " + classes + ", \"lines\": " + parserLogic.getTotalLines()
+                    + ", \"methods\": " + methods + ", \"attributes\": " + parserLogic.getTotalAttributes()
+                    + ", \"packages\": " + parserLogic.getPackages().size() + ", \"resolvedCalls\": " + resolvedCalls + "},\n");
+            writer.write("  \"averages\": {\"methodsPerClass\": " + ratio(methods, classes)
+                    + ", \"linesPerMethod\": " + ratio(parserLogic.getTotalLines(), methods)
+                    + ", \"attributesPerClass\": " + ratio(parserLogic.getTotalAttributes(), classes) + "},\n");
+            writer.write("  \"maxParameterCount\": " + parserLogic.getMaxParameterCount() + ",\n");
+            writer.write("  \"maxParameterMethods\": [");
+            Iterator<MetricsCollector.MethodInfo> maxMethods = parserLogic.getMaxParameterMethods().iterator();
+            while (maxMethods.hasNext()) {
+                MetricsCollector.MethodInfo info = maxMethods.next();
+                writer.write("{\"class\": " + json(info.className) + ", \"method\": " + json(info.methodName) + "}");
+                if (maxMethods.hasNext()) writer.write(", ");
+            }
+            writer.write("],\n  \"packages\": " + jsonArray(new TreeSet<>(parserLogic.getPackages())) + ",\n");
+            writer.write("  \"classes\": [");
+            Map<String, List<MetricsCollector.MethodInfo>> methodLines = parserLogic.getClassMethodLineCounts();
+            Iterator<Map.Entry<String, Integer>> classIterator = new TreeMap<>(parserLogic.getClassMethodCounts()).entrySet().iterator();
+            while (classIterator.hasNext()) {
+                Map.Entry<String, Integer> entry = classIterator.next();
+                writer.write("\n    {\"name\": " + json(entry.getKey()) + ", \"methods\": " + entry.getValue()
+                        + ", \"attributes\": " + parserLogic.getClassAttributeCounts().getOrDefault(entry.getKey(), 0) + ", \"methodLines\": [");
+                Iterator<MetricsCollector.MethodInfo> infos = methodLines.getOrDefault(entry.getKey(), List.of()).iterator();
+                while (infos.hasNext()) {
+                    MetricsCollector.MethodInfo info = infos.next();
+                    writer.write("{\"name\": " + json(info.methodName) + ", \"lines\": " + info.lineCount
+                            + ", \"parameters\": " + info.parameterCount + "}");
+                    if (infos.hasNext()) writer.write(", ");
+                }
+                writer.write("]}");
+                if (classIterator.hasNext()) writer.write(",");
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+
+    // Only the non-zero couplings, one directed pair per line, classes in sorted order
+    private void writeCoupling(CouplingMatrix matrix) throws IOException {
+        try (BufferedWriter writer = newWriter("coupling.csv")) {
+            writer.write("class_a,class_b,coupling\n");
+            for (int a = 0; a < matrix.size(); a++) {
+                String className = csv(matrix.className(a));
+                for (int e = matrix.rowStart(a); e < matrix.rowEnd(a); e++) {
+                    writer.write(className + "," + csv(matrix.className(matrix.neighbor(e))) + "," + matrix.coupling(e) + "\n");
+                }
+            }
+        }
+    }
+
+    private void writeModules(List<Set<String>> modules) throws IOException {
+        try (BufferedWriter writer = newWriter("modules.json")) {
+            writer.write("{\n  \"method\": " + json(method) + ",\n");
+            // cp and linkage only apply to HAC
+            if (method.equals("hac")) {
+                writer.write("  \"cp\": " + cp + ",\n  \"linkage\": " + json(linkage.name()) + ",\n");
+                writer.write("  \"partition\": " + json(partition == null ? "NONE" : partition.name()) + ",\n");
+            }
+            writer.write("  \"modules\": [");
+            for (int i = 0; i < modules.size(); i++) {
+                writer.write((i == 0 ? "\n    " : ",\n    ") + jsonArray(new TreeSet<>(modules.get(i))));
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+
+    private BufferedWriter newWriter(String fileName) throws IOException {
+        return Files.newBufferedWriter(out.resolve(fileName), StandardCharsets.UTF_8);
+    }
+
+    private static String ratio(int numerator, int denominator) {
+        return String.format(Locale.ROOT, "%.2f", denominator > 0 ? (double) numerator / denominator : 0.0);
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String jsonArray(Collection<String> values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (String value : values) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(json(value));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String json(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -4,16 +4,15 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.List;
+import TP2.CallGraph;
 
 public class CallGraphFrame extends JFrame {
-    private final Map<String, List<String>> methodCallGraph;
+    private CallGraph methodCallGraph;
     private GraphPanel graphPanel;
 
-    public CallGraphFrame(Map<String, List<String>> methodCallGraph) {
+    public CallGraphFrame(CallGraph methodCallGraph) {
         this.methodCallGraph = methodCallGraph;
         setTitle("Call Graph Visualization");
         setSize(1200, 700); // Increased width for legend
@@ -65,9 +64,17 @@ public class CallGraphFrame extends JFrame {
         setVisible(true);
     }
 
+    // Shows the graph rebuilt after a file was reanalyzed (watch mode)
+    public void refresh(CallGraph methodCallGraph) {
+        this.methodCallGraph = methodCallGraph;
+        graphPanel.updateGraph(methodCallGraph);
+    }
+
     private Set<String> extractPackages() {
         Set<String> packages = new HashSet<>();
-        for (String method : methodCallGraph.keySet()) {
+        for (int m = 0; m < methodCallGraph.methodCount(); m++) {
+            if (!methodCallGraph.isDeclared(m)) continue;
+            String method = methodCallGraph.symbols().methodName(m);
             int lastDot = method.lastIndexOf(".");
             if (lastDot != -1) {
                 String packagePath = method.substring(0, lastDot);
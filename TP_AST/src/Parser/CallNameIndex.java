@@ -0,0 +1,91 @@
+package Parser;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import TP2.SymbolTable;
+
+// Project-wide index of declared method names used by the syntactic call graph tier in place of
+// JDT bindings. A call is resolved from its receiver as written when that names the calling class or
+// a project type, otherwise when exactly one project class declares the method name. Everything else
+// stays "[unresolved].name", so library calls whose name collides with a single project method are
+// the main source of false edges.
+class CallNameIndex {
+    private final Map<String, Set<String>> classesByMethodName = new HashMap<>();
+    private final Map<String, Set<String>> classesBySimpleName = new HashMap<>();
+
+    CallNameIndex(Collection<FileAnalysis> analyses) {
+        for (FileAnalysis analysis : analyses) {
+            for (Map.Entry<String, List<MetricsCollector.MethodInfo>> entry : analysis.classMethodLineCounts.entrySet()) {
+                String className = entry.getKey();
+                classesBySimpleName.computeIfAbsent(simpleName(className), k -> new LinkedHashSet<>()).add(className);
+                for (MetricsCollector.MethodInfo method : entry.getValue()) {
+                    classesByMethodName.computeIfAbsent(method.methodName, k -> new LinkedHashSet<>()).add(className);
+                }
+            }
+        }
+    }
+
+    // Receives each method whose callees were rewritten, by its row in the file, with the callees it had
+    interface RewriteListener {
+        void rewritten(FileAnalysis analysis, int row, int[] previousCallees);
+    }
+
+    // Rewrites the callees of every syntactically analyzed method of the merged files in place, interning
+    // the resolved names in names. Rewritten rows are reported to listener when it is not null.
+    void resolve(Collection<FileAnalysis> analyses, SymbolTable names, RewriteListener listener) {
+        for (FileAnalysis analysis : analyses) {
+            if (analysis.receivers == null) continue;
+            for (int row = 0; row < analysis.methods.length; row++) {
+                String fullMethodName = names.methodName(analysis.methods[row]);
+                String callerClass = fullMethodName.substring(0, fullMethodName.lastIndexOf('.'));
+                int start = analysis.callStart[row], end = analysis.callStart[row + 1];
+                int[] previous = null;
+                for (int i = start; i < end; i++) {
+                    String callee = names.methodName(analysis.callees[i]);
+                    int resolved = names.methodId(resolve(callerClass, analysis.receivers[i], callee.substring(callee.lastIndexOf('.') + 1)));
+                    if (resolved != analysis.callees[i]) {
+                        if (previous == null) previous = Arrays.copyOfRange(analysis.callees, start, end);
+                        analysis.callees[i] = resolved;
+                    }
+                }
+                if (previous != null && listener != null) listener.rewritten(analysis, row, previous);
+            }
+        }
+    }
+
+    private String resolve(String callerClass, String receiver, String methodName) {
+        Set<String> declaring = classesByMethodName.getOrDefault(methodName, Set.of());
+        if (receiver == null || receiver.equals("this")) {
+            if (declaring.contains(callerClass)) return callerClass + "." + methodName;
+        } else if (!receiver.equals("?")) {
+            // a qualified type name, or a simple one starting with an upper-case letter
+            if (declaring.contains(receiver)) return receiver + "." + methodName;
+            String simpleName = simpleName(receiver);
+            if (Character.isUpperCase(simpleName.charAt(0))) {
+                String match = null;
+                for (String candidate : classesBySimpleName.getOrDefault(simpleName, Set.of())) {
+                    if (!declaring.contains(candidate)) continue;
+                    if (match == null || samePackage(candidate, callerClass)) match = candidate;
+                }
+                if (match != null) return match + "." + methodName;
+            }
+        }
+        if (declaring.size() == 1) return declaring.iterator().next() + "." + methodName;
+        return "[unresolved]." + methodName;
+    }
+
+    private static String simpleName(String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    private static boolean samePackage(String className, String otherClassName) {
+        int dot = className.lastIndexOf('.');
+        int otherDot = otherClassName.lastIndexOf('.');
+        return dot == otherDot && className.regionMatches(0, otherClassName, 0, Math.max(dot, 0));
+    }
+}
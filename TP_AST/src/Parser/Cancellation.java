@@ -0,0 +1,31 @@
+package Parser;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Cancellation for analyses that run on an interruptible thread, such as BackgroundAnalysis's worker:
+// the analysis polls checkCancelled and stops the pools it started with shutdownAndWait. Free of Swing
+// and AWT, so the parser and the batch analyzer can use it.
+public final class Cancellation {
+    private Cancellation() {}
+
+    public static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) throw new CancellationException("Analysis cancelled");
+    }
+
+    // Stops a pool the task started and waits for its threads, so the task only returns, and the
+    // analysis is only over, once none of them is still running. Keeps the caller's interrupt.
+    public static void shutdownAndWait(ExecutorService pool) {
+        pool.shutdownNow();
+        boolean interrupted = Thread.interrupted();
+        while (!pool.isTerminated()) {
+            try {
+                pool.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
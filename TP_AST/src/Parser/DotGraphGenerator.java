@@ -2,9 +2,10 @@ package Parser;
 
 import java.util.List;
 import java.util.Map;
+import TP2.CallGraph;
 
 public class DotGraphGenerator {
     public static void generateDotGraph(Map<String, List<String>> methodCallGraph, String outputFile) {
-        new CallGraphFrame(methodCallGraph).setVisible(true);
+        new CallGraphFrame(CallGraph.fromMethodCallGraph(methodCallGraph)).setVisible(true);
     }
 }
\ No newline at end of file
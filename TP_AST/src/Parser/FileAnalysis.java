@@ -0,0 +1,45 @@
+package Parser;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Partial results for a single compilation unit. Workers fill one per file and
+// ParserLogic merges them in file order, so the totals match a sequential run.
+public class FileAnalysis implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final String filePath;
+    final AnalysisTier tier;
+    String contentHash;
+    String packageName;
+    int lineCount;
+    int classCount;
+    int methodCount;
+    int attributeCount;
+    final Map<String, Integer> classMethodCounts = new LinkedHashMap<>();
+    final Map<String, Integer> classAttributeCounts = new LinkedHashMap<>();
+    final Map<String, List<MetricsCollector.MethodInfo>> classMethodLineCounts = new LinkedHashMap<>();
+    final int[] maxParameterCount = {0};
+    final List<MetricsCollector.MethodInfo> maxParameterMethods = new ArrayList<>();
+    Map<String, List<String>> methodCallGraph = new LinkedHashMap<>();
+    // syntactic tier only: the receiver of each call, in the order of the methodCallGraph entry
+    Map<String, List<String>> callReceivers = new LinkedHashMap<>();
+    // Set when ParserLogic merges the file, which then drops the two maps above: the methods as ids of its
+    // name table, the callees of methods[k] at callees[callStart[k] .. callStart[k + 1]) and, in the
+    // syntactic tier, the receiver of each call
+    int[] methods;
+    int[] callStart;
+    int[] callees;
+    String[] receivers;
+    String methodInfo = "";
+    String variableInfo = "";
+    String invocationInfo = "";
+
+    FileAnalysis(String filePath, AnalysisTier tier) {
+        this.filePath = filePath;
+        this.tier = tier;
+    }
+}
@@ -1,28 +1,140 @@
 package Parser;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import org.apache.commons.io.FileUtils;
+import java.util.Arrays;
+import java.util.List;
 
 public class FileProcessor {
-    public static ArrayList<File> listJavaFilesForFolder(final File folder) {
-        ArrayList<File> javaFiles = new ArrayList<>();
-        for (File fileEntry : folder.listFiles()) {
-            if (fileEntry.isDirectory()) {
-                javaFiles.addAll(listJavaFilesForFolder(fileEntry));
-            } else if (fileEntry.getName().endsWith(".java")) {
-                javaFiles.add(fileEntry);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // One read buffer per thread, reused for every file that thread loads
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    // Source text as JDT wants it, plus its line count taken in the same scan
+    public record SourceFile(Path path, char[] content, int lineCount) {}
+
+    // Every .java file under root, from a single NIO walk that fills one list
+    public static List<Path> listJavaFiles(Path root) throws IOException {
+        List<Path> javaFiles = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && file.getFileName().toString().endsWith(".java")) {
+                    javaFiles.add(file.toAbsolutePath());
+                }
+                return FileVisitResult.CONTINUE;
             }
-        }
+        });
         return javaFiles;
     }
 
-    public static String readFileContent(File file) throws IOException {
-        return FileUtils.readFileToString(file);
+    // Reads the file once through the pooled buffer, decoding UTF-8 straight into the char[] handed to JDT
+    public static SourceFile readSource(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("File too large: " + path);
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            // UTF-8 never yields more chars than bytes
+            CharBuffer out = CharBuffer.allocate((int) size + 1);
+            ByteBuffer buffer = READ_BUFFER.get();
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                decode(decoder, buffer, out, false);
+                buffer.compact();
+            }
+            buffer.flip();
+            decode(decoder, buffer, out, true);
+            decoder.flush(out);
+
+            char[] chars = out.array();
+            int length = out.position();
+            return new SourceFile(path, length == chars.length ? chars : Arrays.copyOf(chars, length), countLines(chars, length));
+        }
+    }
+
+    private static void decode(CharsetDecoder decoder, ByteBuffer in, CharBuffer out, boolean endOfInput) throws IOException {
+        CoderResult result = decoder.decode(in, out, endOfInput);
+        if (result.isError() || result.isOverflow()) result.throwException();
     }
 
-    public static int countLines(String content) {
-        return content.split("\r\n|\r|\n").length;
+    // Streams the raw bytes through the pooled buffer without building any String. CR and LF never
+    // occur inside a multi-byte UTF-8 sequence, so counting on bytes gives the same result as on chars.
+    public static int countLines(Path path) throws IOException {
+        return scan(path, null);
+    }
+
+    // Counts lines and, when a digest is given, feeds it the same bytes in the same pass
+    public static int scan(Path path, MessageDigest digest) throws IOException {
+        LineCounter counter = new LineCounter();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = READ_BUFFER.get();
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                if (digest != null) {
+                    buffer.mark();
+                    digest.update(buffer);
+                    buffer.reset();
+                }
+                while (buffer.hasRemaining()) {
+                    counter.accept(buffer.get());
+                }
+                buffer.clear();
+            }
+        }
+        return counter.lineCount();
+    }
+
+    public static int countLines(char[] content, int length) {
+        LineCounter counter = new LineCounter();
+        for (int i = 0; i < length; i++) {
+            counter.accept(content[i]);
+        }
+        return counter.lineCount();
+    }
+
+    // Same count as content.split("\r\n|\r|\n").length: "\r\n", "\r" and "\n" end a line and trailing
+    // empty lines are not counted, except that empty content still counts as one line
+    private static class LineCounter {
+        private int terminators = 0;
+        private int lastContentLine = 0;
+        private boolean empty = true;
+        private boolean afterCarriageReturn = false;
+
+        void accept(int c) {
+            empty = false;
+            if (c == '\n') {
+                if (!afterCarriageReturn) terminators++;
+                afterCarriageReturn = false;
+            } else if (c == '\r') {
+                terminators++;
+                afterCarriageReturn = true;
+            } else {
+                lastContentLine = terminators + 1;
+                afterCarriageReturn = false;
+            }
+        }
+
+        int lineCount() {
+            return empty ? 1 : lastContentLine;
+        }
     }
-}
\ No newline at end of file
+}
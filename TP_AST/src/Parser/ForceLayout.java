@@ -0,0 +1,549 @@
+package Parser;
+
+import javax.swing.SwingWorker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+// Multilevel Fruchterman-Reingold force-directed layout with Barnes-Hut repulsion. The graph is coarsened
+// by merging matched pairs of neighbours until little is left; the coarsest graph is laid out from random
+// positions and each finer one starts from the layout of the one above, its pairs split apart, and is only
+// refined. Every step rebuilds a quadtree over the positions, so a node is pushed away by far cells as a
+// whole, in O(n log n) rather than O(n^2). A node's mass is 1 + the weight of its edges, so hubs keep room
+// around them; it moves by its forces over its mass, repulsion m_i m_j / d, springs w d along the edges and
+// gravity towards the mass centre, capped by a temperature that cools step by step, from about the spacing
+// between nodes on each refined level. Repulsion falls off as 1 / d, so gravity sets the size of the layout,
+// and the positions handed out are scaled to put nodes about 1 apart. Positions start from the seed and each
+// node's forces are summed on its own, so a seed gives the same layout for any number of threads.
+public class ForceLayout {
+    // steps per level; the coarsest level, laid out from scratch, gets COARSEST_ITERATIONS at least
+    public static final int DEFAULT_ITERATIONS = 40;
+    private static final int COARSEST_ITERATIONS = 300;
+    // coarsening stops at this size, or once a level shrinks by less than MIN_SHRINK
+    private static final int COARSEST_SIZE = 64;
+    private static final double MIN_SHRINK = 0.8;
+    private static final double THETA = 1.0;
+    private static final double GRAVITY = 1.0;
+    private static final int MAX_DEPTH = 48;
+    private static final int PARALLEL_THRESHOLD = 1 << 11;
+    private static final long PUBLISH_INTERVAL_NANOS = 100_000_000L;
+    // quadtree leaves that are empty, or hold several nodes too close together to split
+    private static final int EMPTY = -1, SEVERAL = -2;
+
+    public interface PositionListener {
+        // Called on the event thread with a copy of the positions; done is set on the last call
+        void positions(double[] x, double[] y, boolean done);
+    }
+
+    // One graph of the hierarchy, as undirected CSR with the weights of parallel edges added up; parent is
+    // the node of the next coarser level
+    private static final class Level {
+        final int n;
+        final int[] offsets;
+        final int[] neighbors;
+        final double[] weights;
+        final double[] mass;
+        int[] parent;
+        double[] x, y;
+
+        Level(int[] offsets, int[] neighbors, double[] weights, double[] mass) {
+            this.n = mass.length;
+            this.offsets = offsets;
+            this.neighbors = neighbors;
+            this.weights = weights;
+            this.mass = mass;
+        }
+    }
+
+    private final int n;
+    private final Random random;
+    // the radius of the disk a layout settles to, sqrt(total mass / GRAVITY)
+    private final double radius;
+    private final List<Level> levels = new ArrayList<>();
+    // the level being laid out
+    private volatile int current;
+    private final double[] moveX, moveY;
+    // the nodes in Z order of their position, so consecutive nodes walk mostly the same cells
+    private final int[] order;
+    private final long[] zKeys;
+
+    // Barnes-Hut quadtree: cell 0 is the root and the four children of a split cell are consecutive from
+    // their first child; a leaf holds one node, or none, or SEVERAL. What the force walk reads of a cell is
+    // packed together: mass centre, mass and size in summary, first child and node in links. Mass centres
+    // are sums until the tree is built.
+    private int cells;
+    private double[] summary = new double[0];
+    private int[] links = new int[0];
+    private double[] corner = new double[0];
+
+    private ExecutorService pool;
+    // square of the distance below which repulsion stops growing, a small part of the spacing on the level
+    private double softening2;
+
+    // edgeWeight may be null for weight 1; edges to the node itself are ignored
+    public ForceLayout(int nodeCount, int[] edgeFrom, int[] edgeTo, double[] edgeWeight, long seed) {
+        n = nodeCount;
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < edgeFrom.length; e++) {
+            if (edgeFrom[e] == edgeTo[e]) continue;
+            offsets[edgeFrom[e] + 1]++;
+            offsets[edgeTo[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+        int[] neighbors = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        int[] fill = new int[n];
+        for (int e = 0; e < edgeFrom.length; e++) {
+            int a = edgeFrom[e], b = edgeTo[e];
+            if (a == b) continue;
+            double w = edgeWeight == null ? 1 : edgeWeight[e];
+            neighbors[offsets[a] + fill[a]] = b;
+            weights[offsets[a] + fill[a]++] = w;
+            neighbors[offsets[b] + fill[b]] = a;
+            weights[offsets[b] + fill[b]++] = w;
+        }
+        double[] mass = new double[n];
+        for (int i = 0; i < n; i++) {
+            mass[i] = 1;
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) mass[i] += weights[e];
+        }
+        levels.add(new Level(offsets, neighbors, weights, mass));
+        while (levels.get(levels.size() - 1).n > COARSEST_SIZE) {
+            Level coarser = coarsen(levels.get(levels.size() - 1));
+            if (coarser == null) break;
+            levels.add(coarser);
+        }
+
+        moveX = new double[n];
+        moveY = new double[n];
+        order = new int[n];
+        zKeys = new long[n];
+        random = new Random(seed);
+        current = levels.size() - 1;
+        Level coarsest = levels.get(current);
+        coarsest.x = new double[coarsest.n];
+        coarsest.y = new double[coarsest.n];
+        double totalMass = 0;
+        for (int i = 0; i < n; i++) totalMass += mass[i];
+        radius = Math.sqrt(totalMass / GRAVITY);
+        for (int i = 0; i < coarsest.n; i++) {
+            coarsest.x[i] = (random.nextDouble() - 0.5) * radius;
+            coarsest.y[i] = (random.nextDouble() - 0.5) * radius;
+        }
+    }
+
+    // Positions of the input nodes, about 1 apart; until the finest level is reached, a node is where its
+    // coarse ancestor is
+    public double[] x() {
+        return positions(true);
+    }
+
+    public double[] y() {
+        return positions(false);
+    }
+
+    private double[] positions(boolean horizontal) {
+        int at = current;
+        double[] coordinates = horizontal ? levels.get(at).x : levels.get(at).y;
+        double unit = spacing(levels.get(at), n);
+        double[] result = new double[n];
+        for (int i = 0; i < n; i++) {
+            int node = i;
+            for (int l = 0; l < at; l++) node = levels.get(l).parent[node];
+            result[i] = coordinates[node] / unit;
+        }
+        return result;
+    }
+
+    // Runs the layout on the calling thread
+    public void run(int iterations, int threadCount) {
+        iterate(iterations, threadCount, () -> true);
+    }
+
+    // Runs the layout on a worker thread and hands the positions to listener about every 100 ms, then
+    // once more when it is done. Cancelling the worker stops it after the current step, without a last call.
+    public SwingWorker<Void, double[][]> start(int iterations, PositionListener listener) {
+        SwingWorker<Void, double[][]> worker = new SwingWorker<>() {
+            private long published = System.nanoTime();
+
+            @Override
+            protected Void doInBackground() {
+                iterate(iterations, ParserConfig.THREAD_COUNT, () -> {
+                    if (System.nanoTime() - published >= PUBLISH_INTERVAL_NANOS) {
+                        publish(new double[][] {x(), y()});
+                        published = System.nanoTime();
+                    }
+                    return !isCancelled();
+                });
+                return null;
+            }
+
+            @Override
+            protected void process(List<double[][]> frames) {
+                if (isCancelled()) return;
+                double[][] latest = frames.get(frames.size() - 1);
+                listener.positions(latest[0], latest[1], false);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    if (isCancelled()) return;
+                    get();
+                    listener.positions(x(), y(), true);
+                } catch (CancellationException | InterruptedException e) {
+                    // stopped by its panel
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        };
+        worker.execute();
+        return worker;
+    }
+
+    // Lays out each level from the coarsest down, stepping while afterStep, called after each step, returns true
+    private void iterate(int iterations, int threadCount, BooleanSupplier afterStep) {
+        int threads = n < PARALLEL_THRESHOLD ? 1 : Math.max(1, threadCount);
+        pool = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            for (int l = current; l >= 0; l--) {
+                Level level = levels.get(l);
+                if (l < current) {
+                    prolong(levels.get(current), level);
+                    current = l;
+                }
+                boolean coarsest = l == levels.size() - 1;
+                int steps = coarsest ? Math.max(iterations, COARSEST_ITERATIONS) : iterations;
+                // from scratch the moves may span the layout, later only about the space between nodes
+                double levelSpacing = spacing(level, level.n);
+                softening2 = 1e-4 * levelSpacing * levelSpacing;
+                double start = coarsest ? 0.1 * radius : levelSpacing;
+                for (int s = 0; s < steps; s++) {
+                    // linear cooling, never quite to 0
+                    step(level, Math.max(start * (1 - (double) s / steps), start * 0.005), threads);
+                    if (!afterStep.getAsBoolean()) return;
+                }
+            }
+        } finally {
+            if (pool != null) pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    private void step(Level level, double temperature, int threads) {
+        int count = level.n;
+        if (count == 0) return;
+        buildTree(level);
+        int chunks = threads == 1 || count < PARALLEL_THRESHOLD ? 1 : threads * 4;
+        runParallel(chunks, chunk -> {
+            int[] stack = new int[3 * MAX_DEPTH + 4];
+            for (int k = (int) ((long) count * chunk / chunks); k < (int) ((long) count * (chunk + 1) / chunks); k++) {
+                force(level, order[k], stack);
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            double length = Math.sqrt(moveX[i] * moveX[i] + moveY[i] * moveY[i]);
+            if (length == 0) continue;
+            double scale = Math.min(length, temperature) / length;
+            level.x[i] += moveX[i] * scale;
+            level.y[i] += moveY[i] * scale;
+        }
+    }
+
+    // Sum of the forces on node i, into moveX and moveY
+    private void force(Level level, int i, int[] stack) {
+        double[] x = level.x, y = level.y, mass = level.mass;
+        double xi = x[i], yi = y[i], fx = 0, fy = 0;
+
+        // repulsion m_i m_c / d, from single nodes near by and whole cells far off; a cell holding i itself is
+        // always opened, and i is taken out of a leaf it shares, or i would push itself away
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int c = stack[--top];
+            double cellMass = summary[4 * c + 2];
+            if (cellMass == 0 || links[2 * c + 1] == i) continue;
+            double cx = summary[4 * c], cy = summary[4 * c + 1], size = summary[4 * c + 3];
+            double dx = xi - cx, dy = yi - cy;
+            double d2 = dx * dx + dy * dy;
+            boolean inside = xi >= corner[2 * c] && xi < corner[2 * c] + size
+                    && yi >= corner[2 * c + 1] && yi < corner[2 * c + 1] + size;
+            int firstChild = links[2 * c];
+            if (firstChild >= 0 && (inside || size * size >= THETA * THETA * d2)) {
+                for (int q = 0; q < 4; q++) stack[top++] = firstChild + q;
+                continue;
+            }
+            if (inside) {
+                cellMass -= mass[i];
+                if (cellMass <= 0) continue;
+                dx = xi - (summary[4 * c + 2] * cx - mass[i] * xi) / cellMass;
+                dy = yi - (summary[4 * c + 2] * cy - mass[i] * yi) / cellMass;
+                d2 = dx * dx + dy * dy;
+            }
+            if (d2 == 0) continue;
+            // nodes nearly on top of each other push apart no harder than at the softening distance
+            double f = mass[i] * cellMass / Math.max(d2, softening2);
+            fx += dx * f;
+            fy += dy * f;
+        }
+
+        // attraction w d along the edges
+        for (int e = level.offsets[i]; e < level.offsets[i + 1]; e++) {
+            int j = level.neighbors[e];
+            fx -= (xi - x[j]) * level.weights[e];
+            fy -= (yi - y[j]) * level.weights[e];
+        }
+
+        // gravity towards the mass centre, the root's
+        moveX[i] = fx / mass[i] - GRAVITY * (xi - summary[0]);
+        moveY[i] = fy / mass[i] - GRAVITY * (yi - summary[1]);
+    }
+
+    private void buildTree(Level level) {
+        int n = level.n;
+        double[] x = level.x, y = level.y;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        double side = Math.max(maxX - minX, maxY - minY) * (1 + 1e-9) + 1e-9;
+
+        // 16 bits a coordinate, interleaved, above the node index
+        for (int i = 0; i < n; i++) {
+            long zx = spread((long) ((x[i] - minX) / side * 65536)), zy = spread((long) ((y[i] - minY) / side * 65536));
+            zKeys[i] = ((zx | (zy << 1)) << 31) | i;
+        }
+        Arrays.sort(zKeys, 0, n);
+        for (int k = 0; k < n; k++) order[k] = (int) (zKeys[k] & Integer.MAX_VALUE);
+
+        cells = 0;
+        newCell(minX, minY, side);
+        for (int k = 0; k < n; k++) insert(level, order[k]);
+        for (int c = 0; c < cells; c++) {
+            double cellMass = summary[4 * c + 2];
+            if (cellMass == 0) continue;
+            summary[4 * c] /= cellMass;
+            summary[4 * c + 1] /= cellMass;
+        }
+    }
+
+    // the 16 low bits of v, one every other bit
+    private static long spread(long v) {
+        v &= 0xFFFF;
+        v = (v | (v << 8)) & 0x00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0FL;
+        v = (v | (v << 2)) & 0x33333333L;
+        v = (v | (v << 1)) & 0x55555555L;
+        return v;
+    }
+
+    private void insert(Level level, int i) {
+        double[] x = level.x, y = level.y;
+        int c = 0;
+        for (int depth = 0; ; depth++) {
+            add(level, c, i);
+            if (links[2 * c] < 0) {
+                if (links[2 * c + 1] == EMPTY) {
+                    links[2 * c + 1] = i;
+                    return;
+                }
+                if (depth >= MAX_DEPTH || links[2 * c + 1] == SEVERAL) {
+                    links[2 * c + 1] = SEVERAL;
+                    return;
+                }
+                // split, moving the node already here down a level
+                int resident = links[2 * c + 1];
+                links[2 * c + 1] = EMPTY;
+                int first = cells;
+                double half = summary[4 * c + 3] / 2;
+                for (int q = 0; q < 4; q++) newCell(corner[2 * c] + (q & 1) * half, corner[2 * c + 1] + (q >> 1) * half, half);
+                links[2 * c] = first;
+                int r = first + quadrant(c, x[resident], y[resident]);
+                add(level, r, resident);
+                links[2 * r + 1] = resident;
+            }
+            c = links[2 * c] + quadrant(c, x[i], y[i]);
+        }
+    }
+
+    private void add(Level level, int c, int i) {
+        double[] x = level.x, y = level.y, mass = level.mass;
+        summary[4 * c] += mass[i] * x[i];
+        summary[4 * c + 1] += mass[i] * y[i];
+        summary[4 * c + 2] += mass[i];
+    }
+
+    private int quadrant(int c, double px, double py) {
+        double half = summary[4 * c + 3] / 2;
+        return (px >= corner[2 * c] + half ? 1 : 0) + (py >= corner[2 * c + 1] + half ? 2 : 0);
+    }
+
+    private void newCell(double left, double top, double size) {
+        if (4 * cells == summary.length) {
+            int capacity = Math.max(64, cells * 2);
+            summary = Arrays.copyOf(summary, 4 * capacity);
+            links = Arrays.copyOf(links, 2 * capacity);
+            corner = Arrays.copyOf(corner, 2 * capacity);
+        }
+        summary[4 * cells] = 0;
+        summary[4 * cells + 1] = 0;
+        summary[4 * cells + 2] = 0;
+        summary[4 * cells + 3] = size;
+        links[2 * cells] = -1;
+        links[2 * cells + 1] = EMPTY;
+        corner[2 * cells] = left;
+        corner[2 * cells + 1] = top;
+        cells++;
+    }
+
+    // Each node not yet matched is merged with the unmatched neighbour it is most attached to for their masses,
+    // the first one on a tie; null when that would hardly shrink the graph
+    private static Level coarsen(Level fine) {
+        int[] parent = new int[fine.n];
+        Arrays.fill(parent, -1);
+        int count = 0;
+        for (int i = 0; i < fine.n; i++) {
+            if (parent[i] >= 0) continue;
+            int best = -1;
+            double bestScore = 0;
+            for (int e = fine.offsets[i]; e < fine.offsets[i + 1]; e++) {
+                int j = fine.neighbors[e];
+                if (parent[j] >= 0) continue;
+                double score = fine.weights[e] / (fine.mass[i] * fine.mass[j]);
+                if (score > bestScore || (score == bestScore && best >= 0 && j < best)) {
+                    best = j;
+                    bestScore = score;
+                }
+            }
+            parent[i] = count;
+            if (best >= 0) parent[best] = count;
+            count++;
+        }
+        if (count > MIN_SHRINK * fine.n) return null;
+        fine.parent = parent;
+
+        // members of each coarse node, then its summed edges to the others
+        int[] memberStart = new int[count + 1];
+        for (int i = 0; i < fine.n; i++) memberStart[parent[i] + 1]++;
+        for (int a = 0; a < count; a++) memberStart[a + 1] += memberStart[a];
+        int[] members = new int[fine.n];
+        int[] fill = new int[count];
+        for (int i = 0; i < fine.n; i++) members[memberStart[parent[i]] + fill[parent[i]]++] = i;
+
+        double[] mass = new double[count];
+        int[] offsets = new int[count + 1];
+        List<int[]> rowNeighbors = new ArrayList<>(count);
+        List<double[]> rowWeights = new ArrayList<>(count);
+        double[] sum = new double[count];
+        // seen[b] is a + 1 once b is among the neighbours of a
+        int[] seen = new int[count];
+        int[] touched = new int[count];
+        for (int a = 0; a < count; a++) {
+            int touchedCount = 0;
+            for (int m = memberStart[a]; m < memberStart[a + 1]; m++) {
+                int i = members[m];
+                mass[a] += fine.mass[i];
+                for (int e = fine.offsets[i]; e < fine.offsets[i + 1]; e++) {
+                    int b = parent[fine.neighbors[e]];
+                    if (b == a) continue;
+                    if (seen[b] != a + 1) {
+                        seen[b] = a + 1;
+                        touched[touchedCount++] = b;
+                    }
+                    sum[b] += fine.weights[e];
+                }
+            }
+            Arrays.sort(touched, 0, touchedCount);
+            int[] rowN = Arrays.copyOf(touched, touchedCount);
+            double[] rowW = new double[touchedCount];
+            for (int t = 0; t < touchedCount; t++) {
+                rowW[t] = sum[rowN[t]];
+                sum[rowN[t]] = 0;
+            }
+            rowNeighbors.add(rowN);
+            rowWeights.add(rowW);
+            offsets[a + 1] = offsets[a] + touchedCount;
+        }
+        int[] neighbors = new int[offsets[count]];
+        double[] weights = new double[offsets[count]];
+        for (int a = 0; a < count; a++) {
+            System.arraycopy(rowNeighbors.get(a), 0, neighbors, offsets[a], offsets[a + 1] - offsets[a]);
+            System.arraycopy(rowWeights.get(a), 0, weights, offsets[a], offsets[a + 1] - offsets[a]);
+        }
+        return new Level(offsets, neighbors, weights, mass);
+    }
+
+    // Starts fine where its coarse nodes are, the second node of a pair set a little apart at random
+    private void prolong(Level coarse, Level fine) {
+        fine.x = new double[fine.n];
+        fine.y = new double[fine.n];
+        double spread = 0.1 * spacing(coarse, coarse.n);
+        boolean[] placed = new boolean[coarse.n];
+        for (int i = 0; i < fine.n; i++) {
+            int a = fine.parent[i];
+            fine.x[i] = coarse.x[a];
+            fine.y[i] = coarse.y[a];
+            if (placed[a]) {
+                double angle = 2 * Math.PI * random.nextDouble();
+                fine.x[i] += spread * Math.cos(angle);
+                fine.y[i] += spread * Math.sin(angle);
+            }
+            placed[a] = true;
+        }
+        coarse.x = null;
+        coarse.y = null;
+    }
+
+    // The spacing between count nodes spread evenly over the disk the level covers, its radius estimated as
+    // 3/2 of the mean distance from the middle
+    private static double spacing(Level level, int count) {
+        if (level.n == 0) return 1;
+        double cx = 0, cy = 0;
+        for (int i = 0; i < level.n; i++) {
+            cx += level.x[i];
+            cy += level.y[i];
+        }
+        cx /= level.n;
+        cy /= level.n;
+        double distance = 0;
+        for (int i = 0; i < level.n; i++) distance += Math.hypot(level.x[i] - cx, level.y[i] - cy);
+        return Math.max(1.5 * distance / level.n * Math.sqrt(Math.PI / count), 1e-9);
+    }
+
+    private void runParallel(int tasks, IntConsumer task) {
+        if (pool == null || tasks <= 1) {
+            for (int t = 0; t < tasks; t++) task.accept(t);
+            return;
+        }
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < tasks; t++) {
+                int id = t;
+                futures.add(pool.submit(() -> task.accept(id)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Layout interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -4,29 +4,62 @@ import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Rectangle2D;
 import java.util.*;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 
+import TP2.CallGraph;
+import TP2.SymbolTable;
+
+// Nodes are kept in arrays with their boxes, labels and label widths computed once per layout, and a
+// NodeGrid over the boxes answers hit tests and the viewport query, so hovering reads one grid cell and
+// painting only touches the nodes in view; a SegmentGrid does the same for the calls. The graph itself
+// is drawn in background tiles by a TileCache, so panning and zooming only blit images and the hover
+// outline is drawn over them. Nodes are placed by a ForceLayout on a worker thread, and each set of
+// positions it streams in replaces the boxes, grid and scene at once.
 public class GraphPanel extends JPanel {
-    private final Map<String, List<String>> methodCallGraph;
-    private Map<String, List<String>> filteredGraph;
-    private Set<String> allMethods;
-    private Map<String, Integer> callCounts; // Track call frequency
-    private Map<String, Color> nodeColors;
-    private Map<String, Point> nodePositions;
+    private static final int NODE_HEIGHT = 40;
+    private static final int MIN_NODE_WIDTH = 150;
+    private static final int ARROW_SIZE = 10;
+    private static final double ZOOM_STEP = 1.1;
+    private static final int MIN_ZOOM_LEVEL = -40, MAX_ZOOM_LEVEL = 15;
+    // world units per unit of layout space, and the margin left above and to the left of the graph
+    private static final double LAYOUT_SCALE = 250;
+    private static final int LAYOUT_MARGIN = 50;
+
+    private CallGraph methodCallGraph;
+    // declared methods whose calls are shown, by id: all of them until a filter is applied
+    private BitSet filteredGraph;
+    private int[] callCounts; // Track call frequency, by method id
+    // laid out nodes, by index in drawing order
+    private String[] nodes = new String[0];
+    private String[] labels = new String[0];
+    private Color[] nodeColors = new Color[0];
+    private int[] nodeX = new int[0], nodeY = new int[0], nodeWidth = new int[0], nodeHeight = new int[0];
+    // resolved calls between laid out nodes
+    private int[] edgeFrom = new int[0], edgeTo = new int[0];
+    private NodeGrid grid;
+    private final TileCache tiles = new TileCache(this);
+    private SwingWorker<Void, double[][]> layout;
+    private final Rectangle clip = new Rectangle();
+    // zoomFactor is ZOOM_STEP^zoomLevel, so each zoom keeps the same tiles
+    private int zoomLevel = 0;
     private double zoomFactor = 1.0;
     private int transX = 0, transY = 0;
     private Point lastDragPoint;
-    private String highlightedNode = null;
+    private int highlightedNode = -1;
+    // a new layout is brought into view on its first paint, once the panel has a size
+    private boolean centerView;
 
-    public GraphPanel(Map<String, List<String>> methodCallGraph) {
+    public GraphPanel(CallGraph methodCallGraph) {
         this.methodCallGraph = methodCallGraph;
-        this.filteredGraph = new HashMap<>(methodCallGraph);
+        this.filteredGraph = declaredMethods();
         this.callCounts = calculateCallCounts();
-        System.out.println("Initial callCounts: " + callCounts);
         initializeGraphData();
 
         addMouseWheelListener(this::handleZoom);
@@ -40,6 +73,14 @@ public class GraphPanel extends JPanel {
                 }
                 lastDragPoint = e.getPoint();
             }
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                int node = findNodeAtPoint(e.getPoint());
+                if (node != highlightedNode) {
+                    highlightedNode = node;
+                    repaint();
+                }
+            }
         });
         addMouseListener(new MouseAdapter() {
             @Override
@@ -50,65 +91,120 @@ public class GraphPanel extends JPanel {
             public void mouseReleased(MouseEvent e) {
                 lastDragPoint = null;
             }
-            @Override
-            public void mouseMoved(MouseEvent e) {
-                highlightedNode = findNodeAtPoint(e.getPoint());
-                repaint();
-            }
         });
     }
 
-    private Map<String, Integer> calculateCallCounts() {
-        Map<String, Integer> counts = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-        for (Map.Entry<String, List<String>> entry : methodCallGraph.entrySet()) {
-            String caller = entry.getKey();
-            counts.putIfAbsent(caller, 0);
-            visited.add(caller);
-            for (String callee : entry.getValue()) {
-                if (!callee.startsWith("[unresolved].") && !visited.contains(callee)) {
-                    counts.put(callee, counts.getOrDefault(callee, 0) + 1);
-                    System.out.println("Counting call: " + caller + " -> " + callee + ", Count: " + counts.get(callee));
-                    countRecursiveCalls(callee, counts, visited);
+    // Reloads the panel after the call graph was patched (watch mode)
+    public void updateGraph(CallGraph methodCallGraph) {
+        this.methodCallGraph = methodCallGraph;
+        this.filteredGraph = declaredMethods();
+        this.callCounts = calculateCallCounts();
+        initializeGraphData();
+        repaint();
+    }
+
+    private BitSet declaredMethods() {
+        BitSet declared = new BitSet();
+        for (int m = 0; m < methodCallGraph.methodCount(); m++) {
+            if (methodCallGraph.isDeclared(m)) declared.set(m);
+        }
+        return declared;
+    }
+
+    private boolean isUnresolved(int method) {
+        SymbolTable symbols = methodCallGraph.symbols();
+        return symbols.isUnresolved(symbols.classOfMethod(method));
+    }
+
+    // A call made several times is counted once per call site, as the callee lists repeated it
+    private int[] calculateCallCounts() {
+        int[] counts = new int[methodCallGraph.methodCount()];
+        boolean[] visited = new boolean[counts.length];
+        for (int caller = 0; caller < counts.length; caller++) {
+            if (!methodCallGraph.isDeclared(caller)) continue;
+            visited[caller] = true;
+            for (int e = methodCallGraph.rowStart(caller); e < methodCallGraph.rowEnd(caller); e++) {
+                int callee = methodCallGraph.callee(e);
+                for (int k = 0; k < methodCallGraph.multiplicity(e); k++) {
+                    if (!isUnresolved(callee) && !visited[callee]) {
+                        counts[callee]++;
+                        countRecursiveCalls(callee, counts, visited);
+                    }
                 }
             }
         }
         return counts;
     }
 
-    private void countRecursiveCalls(String method, Map<String, Integer> counts, Set<String> visited) {
-        if (methodCallGraph.containsKey(method) && !visited.contains(method)) {
-            visited.add(method);
-            for (String callee : methodCallGraph.get(method)) {
-                if (!callee.startsWith("[unresolved].")) {
-                    counts.put(callee, counts.getOrDefault(callee, 0) + 1);
-                    System.out.println("Recursive call: " + method + " -> " + callee + ", Count: " + counts.get(callee));
-                    countRecursiveCalls(callee, counts, visited);
+    private void countRecursiveCalls(int method, int[] counts, boolean[] visited) {
+        if (methodCallGraph.isDeclared(method) && !visited[method]) {
+            visited[method] = true;
+            for (int e = methodCallGraph.rowStart(method); e < methodCallGraph.rowEnd(method); e++) {
+                int callee = methodCallGraph.callee(e);
+                for (int k = 0; k < methodCallGraph.multiplicity(e); k++) {
+                    if (!isUnresolved(callee)) {
+                        counts[callee]++;
+                        countRecursiveCalls(callee, counts, visited);
+                    }
                 }
             }
         }
     }
 
     private void initializeGraphData() {
-        allMethods = new HashSet<>();
-        nodeColors = new HashMap<>();
-        nodePositions = new HashMap<>();
+        boolean[] shown = new boolean[methodCallGraph.methodCount()];
+        for (int m = filteredGraph.nextSetBit(0); m >= 0; m = filteredGraph.nextSetBit(m + 1)) {
+            shown[m] = true;
+            for (int e = methodCallGraph.rowStart(m); e < methodCallGraph.rowEnd(m); e++) {
+                shown[methodCallGraph.callee(e)] = true;
+            }
+        }
 
-        for (String method : filteredGraph.keySet()) {
-            allMethods.add(method);
-            allMethods.addAll(filteredGraph.get(method));
+        int count = 0;
+        int[] index = new int[shown.length];
+        for (int m = 0; m < shown.length; m++) {
+            index[m] = shown[m] && !isUnresolved(m) ? count++ : -1;
+        }
+        nodes = new String[count];
+        labels = new String[count];
+        nodeColors = new Color[count];
+        nodeWidth = new int[count];
+        nodeHeight = new int[count];
+        FontMetrics fm = getFontMetrics(getFont());
+        for (int m = 0; m < shown.length; m++) {
+            int i = index[m];
+            if (i < 0) continue;
+            String method = methodCallGraph.symbols().methodName(m);
+            nodes[i] = method;
+            labels[i] = method.substring(method.lastIndexOf(".", method.lastIndexOf(".") - 1) + 1);
+            nodeColors[i] = getNodeColor(m);
+            nodeWidth[i] = Math.max(MIN_NODE_WIDTH, fm.stringWidth(labels[i]) + 20); // +20 for padding
+            nodeHeight[i] = NODE_HEIGHT;
         }
 
-        for (String method : allMethods) {
-            nodeColors.put(method, getNodeColor(method));
-            System.out.println("Method: " + method + ", Color: " + nodeColors.get(method) + ", Call Count: " + callCounts.getOrDefault(method, 0));
+        // one edge per call site, so calls made more often pull harder in the layout and weigh more in bundles
+        List<int[]> edges = new ArrayList<>();
+        for (int m = filteredGraph.nextSetBit(0); m >= 0; m = filteredGraph.nextSetBit(m + 1)) {
+            if (index[m] < 0) continue;
+            for (int e = methodCallGraph.rowStart(m); e < methodCallGraph.rowEnd(m); e++) {
+                int target = index[methodCallGraph.callee(e)];
+                if (target < 0) continue;
+                for (int k = 0; k < methodCallGraph.multiplicity(e); k++) edges.add(new int[] {index[m], target});
+            }
+        }
+        edgeFrom = new int[edges.size()];
+        edgeTo = new int[edges.size()];
+        for (int e = 0; e < edges.size(); e++) {
+            edgeFrom[e] = edges.get(e)[0];
+            edgeTo[e] = edges.get(e)[1];
         }
 
+        highlightedNode = -1;
         layoutNodes();
     }
 
-    private Color getNodeColor(String method) {
-        int callCount = callCounts.getOrDefault(method, 0);
+    private Color getNodeColor(int method) {
+        int callCount = callCounts[method];
         if (callCount == 0) {
             return Color.LIGHT_GRAY; // Not called
         } else if (callCount <= 2) {
@@ -121,45 +217,66 @@ public class GraphPanel extends JPanel {
         return Color.LIGHT_GRAY; // Default (should not occur with current data)
     }
 
+    // Shows the starting positions of a new layout and streams the rest in; a layout still running for the
+    // previous graph is cancelled
     private void layoutNodes() {
-        int gridSize = (int) Math.ceil(Math.sqrt(allMethods.size()));
-        int x = 50, y = 50, xSpacing = 200, ySpacing = 80;
-        int index = 0;
-        for (String method : allMethods) {
-            if (method.startsWith("[unresolved].")) continue;
-            nodePositions.put(method, new Point(x + (index % gridSize) * xSpacing, y + (index / gridSize) * ySpacing));
-            index++;
+        if (layout != null) layout.cancel(true);
+        centerView = true;
+        ForceLayout force = new ForceLayout(nodes.length, edgeFrom, edgeTo, null, ParserConfig.LAYOUT_SEED);
+        placeNodes(force.x(), force.y());
+        layout = force.start(ForceLayout.DEFAULT_ITERATIONS, (x, y, done) -> placeNodes(x, y));
+    }
+
+    // Boxes centred on the layout positions. The scene being drawn keeps the arrays it was given, so new
+    // ones are made for each set of positions.
+    private void placeNodes(double[] x, double[] y) {
+        int count = nodes.length;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, x[i] * LAYOUT_SCALE - nodeWidth[i] / 2.0);
+            minY = Math.min(minY, y[i] * LAYOUT_SCALE - nodeHeight[i] / 2.0);
+        }
+        int[] placedX = new int[count], placedY = new int[count];
+        for (int i = 0; i < count; i++) {
+            placedX[i] = LAYOUT_MARGIN + (int) Math.round(x[i] * LAYOUT_SCALE - nodeWidth[i] / 2.0 - minX);
+            placedY[i] = LAYOUT_MARGIN + (int) Math.round(y[i] * LAYOUT_SCALE - nodeHeight[i] / 2.0 - minY);
         }
+        nodeX = placedX;
+        nodeY = placedY;
+        grid = new NodeGrid(nodeX, nodeY, nodeWidth, nodeHeight, count);
+        tiles.setScene(new CallGraphScene(labels, nodeColors, nodeX, nodeY, nodeWidth, edgeFrom, edgeTo, grid, getFont()));
+    }
+
+    @Override
+    public void removeNotify() {
+        if (layout != null) layout.cancel(true);
+        super.removeNotify();
     }
 
     public void applyFilters(String classFilter, String packageFilter) {
-        filteredGraph = new HashMap<>();
-        Queue<String> queue = new LinkedList<>();
-        Set<String> visited = new HashSet<>();
+        filteredGraph = new BitSet();
+        Queue<Integer> queue = new LinkedList<>();
+        boolean[] visited = new boolean[methodCallGraph.methodCount()];
 
         // Initialize with all methods as potential roots
-        for (String method : methodCallGraph.keySet()) {
-            int lastDot = method.lastIndexOf(".");
-            String packageName = lastDot != -1 && method.lastIndexOf(".", lastDot - 1) != -1 
-                ? method.substring(0, method.lastIndexOf(".", lastDot - 1)) : "[default]";
-            if (packageFilter.isEmpty() || packageName.equals(packageFilter)) {
+        for (int method = 0; method < visited.length; method++) {
+            if (!methodCallGraph.isDeclared(method)) continue;
+            if (packageFilter.isEmpty() || packageOf(method).equals(packageFilter)) {
                 queue.offer(method);
-                visited.add(method);
+                visited[method] = true;
             }
         }
 
         // BFS without depth limit
         while (!queue.isEmpty()) {
-            String current = queue.poll();
-            filteredGraph.put(current, methodCallGraph.get(current));
-            for (String callee : methodCallGraph.get(current)) {
-                if (!visited.contains(callee) && !callee.startsWith("[unresolved].")) {
-                    int lastDot = callee.lastIndexOf(".");
-                    String packageName = lastDot != -1 && callee.lastIndexOf(".", lastDot - 1) != -1 
-                        ? callee.substring(0, callee.lastIndexOf(".", lastDot - 1)) : "[default]";
-                    if (packageFilter.isEmpty() || packageName.equals(packageFilter)) {
+            int current = queue.poll();
+            filteredGraph.set(current);
+            for (int e = methodCallGraph.rowStart(current); e < methodCallGraph.rowEnd(current); e++) {
+                int callee = methodCallGraph.callee(e);
+                if (!visited[callee] && !isUnresolved(callee)) {
+                    if (packageFilter.isEmpty() || packageOf(callee).equals(packageFilter)) {
                         queue.offer(callee);
-                        visited.add(callee);
+                        visited[callee] = true;
                     }
                 }
             }
@@ -169,71 +286,303 @@ public class GraphPanel extends JPanel {
         repaint();
     }
 
+    private String packageOf(int method) {
+        String name = methodCallGraph.symbols().methodName(method);
+        int lastDot = name.lastIndexOf(".");
+        return lastDot != -1 && name.lastIndexOf(".", lastDot - 1) != -1
+            ? name.substring(0, name.lastIndexOf(".", lastDot - 1)) : "[default]";
+    }
+
+    // Zooms by a step around the pointer, down to an overview of the whole graph
     private void handleZoom(MouseWheelEvent e) {
-        if (e.getPreciseWheelRotation() < 0) zoomFactor += 0.1;
-        else zoomFactor -= 0.1;
-        zoomFactor = Math.max(0.5, zoomFactor);
+        int level = Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL,
+                zoomLevel + (e.getPreciseWheelRotation() < 0 ? 1 : -1)));
+        if (level == zoomLevel) return;
+        double worldX = (e.getX() - transX) / zoomFactor, worldY = (e.getY() - transY) / zoomFactor;
+        zoomLevel = level;
+        zoomFactor = Math.pow(ZOOM_STEP, level);
+        transX = (int) Math.round(e.getX() - worldX * zoomFactor);
+        transY = (int) Math.round(e.getY() - worldY * zoomFactor);
         repaint();
     }
 
-    private String findNodeAtPoint(Point p) {
-        for (String method : nodePositions.keySet()) {
-            Point pos = nodePositions.get(method);
-            String label = method.substring(method.lastIndexOf(".", method.lastIndexOf(".") - 1) + 1);
-            FontMetrics fm = getFontMetrics(getFont());
-            int width = Math.max(150, fm.stringWidth(label) + 20); // Minimum 150, +20 for padding
-            Rectangle rect = new Rectangle(pos.x, pos.y, width, 40);
-            if (rect.contains(p)) return method;
+    // Pans so the middle of the nodes is in the middle of the panel
+    private void centerOnGraph() {
+        centerView = false;
+        if (nodes.length == 0) return;
+        double centerX = 0, centerY = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            centerX += nodeX[i] + nodeWidth[i] / 2.0;
+            centerY += nodeY[i] + nodeHeight[i] / 2.0;
         }
-        return null;
+        transX = (int) Math.round(getWidth() / 2.0 - centerX / nodes.length * zoomFactor);
+        transY = (int) Math.round(getHeight() / 2.0 - centerY / nodes.length * zoomFactor);
+    }
+
+    // The node under a point of the panel, taking pan and zoom into account, or -1
+    private int findNodeAtPoint(Point p) {
+        if (grid == null) return -1;
+        int x = (int) Math.floor((p.x - transX) / zoomFactor);
+        int y = (int) Math.floor((p.y - transY) / zoomFactor);
+        return grid.nodeAt(x, y);
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
-        g2d.translate(transX, transY);
-        g2d.scale(zoomFactor, zoomFactor);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        // left unchanged when there is no clip
+        clip.setBounds(0, 0, getWidth(), getHeight());
+        g2d.getClipBounds(clip);
+        if (centerView && getWidth() > 0) centerOnGraph();
+        tiles.paint(g2d, zoomFactor, transX, transY, clip);
+
+        if (highlightedNode >= 0) {
+            g2d.translate(transX, transY);
+            g2d.scale(zoomFactor, zoomFactor);
+            g2d.setColor(Color.YELLOW); // Highlight on hover
+            g2d.drawRect(nodeX[highlightedNode] - 2, nodeY[highlightedNode] - 2,
+                    nodeWidth[highlightedNode] + 4, NODE_HEIGHT + 4);
+        }
+    }
 
-        g2d.setColor(Color.DARK_GRAY);
-        for (Map.Entry<String, List<String>> entry : filteredGraph.entrySet()) {
-            String caller = entry.getKey();
-            Point callerPos = nodePositions.get(caller);
-            if (callerPos == null) continue;
+    // One layout, painted on the tile threads. From DETAIL_ZOOM up every method is its labeled box and
+    // every call an arrow; below, methods are dots and the calls between two cells of a coarse grid are
+    // drawn as one line, thicker the more calls it stands for. The arrows and each zoom's bundles get a
+    // SegmentGrid on first use, so a tile only reads the calls crossing it.
+    private static final class CallGraphScene implements TileCache.Scene {
+        private static final double DETAIL_ZOOM = 0.4;
+        // screen sizes in the overview
+        private static final int BUNDLE_CELL = 48;
+        private static final int DOT_SIZE = 4;
+        private static final int MAX_BUNDLE_WIDTH = 6;
+        // by bundle weight, the bit length of its call count
+        private static final Color[] BUNDLE_COLORS = new Color[33];
 
-            for (String callee : entry.getValue()) {
-                if (callee.startsWith("[unresolved].")) continue;
-                Point calleePos = nodePositions.get(callee);
-                if (calleePos == null) continue;
+        static {
+            for (int weight = 0; weight < BUNDLE_COLORS.length; weight++) {
+                BUNDLE_COLORS[weight] = new Color(64, 64, 64, Math.min(255, 40 + 20 * weight));
+            }
+        }
+
+        // the visible nodes and calls of the tile being painted, per tile thread
+        private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+        private final String[] labels;
+        private final Color[] colors;
+        private final int[] x, y, width;
+        private final int[] edgeFrom, edgeTo;
+        private final NodeGrid grid;
+        private final Font font;
+        private final Map<Double, Bundles> bundles = new ConcurrentHashMap<>();
+        private volatile Arrows arrows;
+
+        CallGraphScene(String[] labels, Color[] colors, int[] x, int[] y, int[] width, int[] edgeFrom, int[] edgeTo,
+                       NodeGrid grid, Font font) {
+            this.labels = labels;
+            this.colors = colors;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.edgeFrom = edgeFrom;
+            this.edgeTo = edgeTo;
+            this.grid = grid;
+            this.font = font;
+        }
 
-                drawArrow(g2d, callerPos.x + 75, callerPos.y + 20, calleePos.x + 75, calleePos.y + 20);
+        @Override
+        public void paint(Graphics2D g, Rectangle2D world, double zoom) {
+            Rectangle area = world.getBounds();
+            area.grow(ARROW_SIZE, ARROW_SIZE);
+            Scratch scratch = SCRATCH.get();
+            int[] visible = scratch.nodes(labels.length);
+            int count = grid.nodesIn(area, visible);
+            if (zoom >= DETAIL_ZOOM) {
+                paintDetail(g, area, scratch, visible, count);
+            } else {
+                paintOverview(g, area, zoom, scratch, visible, count);
             }
         }
 
-        for (String method : nodePositions.keySet()) {
-            Point pos = nodePositions.get(method);
-            Color color = nodeColors.get(method);
-            g2d.setColor(color);
-            String label = method.substring(method.lastIndexOf(".", method.lastIndexOf(".") - 1) + 1);
-            FontMetrics fm = g2d.getFontMetrics();
-            int width = Math.max(150, fm.stringWidth(label) + 20); // Minimum 150, +20 for padding
-            g2d.fillRect(pos.x, pos.y, width, 40);
-            g2d.setColor(Color.BLACK);
-            g2d.drawRect(pos.x, pos.y, width, 40);
-            if (method.equals(highlightedNode)) {
-                g2d.setColor(Color.YELLOW); // Highlight on hover
-                g2d.drawRect(pos.x - 2, pos.y - 2, width + 4, 44);
+        private void paintDetail(Graphics2D g, Rectangle area, Scratch scratch, int[] visible, int count) {
+            int left = area.x, top = area.y, right = area.x + area.width, bottom = area.y + area.height;
+            Arrows calls = arrows();
+            int[] crossing = scratch.segments(edgeFrom.length);
+            int crossingCount = calls.grid.segmentsIn(area, crossing);
+            g.setColor(Color.DARK_GRAY);
+            for (int c = 0; c < crossingCount; c++) {
+                int e = crossing[c];
+                int x1 = calls.x1[e], y1 = calls.y1[e], x2 = calls.x2[e], y2 = calls.y2[e];
+                if (Math.max(x1, x2) < left || Math.min(x1, x2) > right
+                        || Math.max(y1, y2) < top || Math.min(y1, y2) > bottom) continue;
+                drawArrow(g, x1, y1, x2, y2);
             }
-            g2d.setColor(Color.WHITE);
-            g2d.drawString(label, pos.x + 10, pos.y + 25);
-            System.out.println("Drawing " + method + " with color " + color + " at " + pos + ", width: " + width);
+
+            g.setFont(font);
+            for (int v = 0; v < count; v++) {
+                int i = visible[v];
+                g.setColor(colors[i]);
+                g.fillRect(x[i], y[i], width[i], NODE_HEIGHT);
+                g.setColor(Color.BLACK);
+                g.drawRect(x[i], y[i], width[i], NODE_HEIGHT);
+                g.setColor(Color.WHITE);
+                g.drawString(labels[i], x[i] + 10, y[i] + 25);
+            }
+        }
+
+        private void paintOverview(Graphics2D g, Rectangle area, double zoom, Scratch scratch, int[] visible, int count) {
+            Bundles calls = bundles.computeIfAbsent(zoom, z -> new Bundles(this, z));
+            // a bundle passing just outside the tile still reaches into it by half its width
+            Rectangle reach = new Rectangle(area);
+            int halfWidth = (int) Math.ceil(MAX_BUNDLE_WIDTH / zoom / 2);
+            reach.grow(halfWidth, halfWidth);
+            int[] crossing = scratch.segments(calls.size);
+            int crossingCount = calls.grid.segmentsIn(reach, crossing);
+            int drawnWeight = -1;
+            for (int c = 0; c < crossingCount; c++) {
+                int b = crossing[c];
+                double x1 = calls.x1[b], y1 = calls.y1[b], x2 = calls.x2[b], y2 = calls.y2[b];
+                if (Math.max(x1, x2) < area.x || Math.min(x1, x2) > area.x + area.width
+                        || Math.max(y1, y2) < area.y || Math.min(y1, y2) > area.y + area.height) continue;
+                int weight = 32 - Integer.numberOfLeadingZeros(calls.count[b]);
+                if (weight != drawnWeight) {
+                    g.setStroke(calls.strokes[Math.min(MAX_BUNDLE_WIDTH, weight)]);
+                    g.setColor(BUNDLE_COLORS[weight]);
+                    drawnWeight = weight;
+                }
+                g.drawLine((int) x1, (int) y1, (int) x2, (int) y2);
+            }
+
+            int dot = (int) Math.ceil(DOT_SIZE / zoom);
+            for (int v = 0; v < count; v++) {
+                int i = visible[v];
+                g.setColor(colors[i]);
+                g.fillRect(x[i] + width[i] / 2 - dot / 2, y[i] + NODE_HEIGHT / 2 - dot / 2, dot, dot);
+            }
+        }
+
+        // Built by the first tile thread to paint in detail, the others wait for it
+        private Arrows arrows() {
+            Arrows calls = arrows;
+            if (calls == null) {
+                synchronized (this) {
+                    calls = arrows;
+                    if (calls == null) arrows = calls = new Arrows(this);
+                }
+            }
+            return calls;
+        }
+    }
+
+    // The arrow of each call, from the caller's box to the callee's, and the grid over them
+    private static final class Arrows {
+        final int[] x1, y1, x2, y2;
+        final SegmentGrid grid;
+
+        Arrows(CallGraphScene scene) {
+            int count = scene.edgeFrom.length;
+            x1 = new int[count];
+            y1 = new int[count];
+            x2 = new int[count];
+            y2 = new int[count];
+            for (int e = 0; e < count; e++) {
+                x1[e] = scene.x[scene.edgeFrom[e]] + 75;
+                y1[e] = scene.y[scene.edgeFrom[e]] + 20;
+                x2[e] = scene.x[scene.edgeTo[e]] + 75;
+                y2[e] = scene.y[scene.edgeTo[e]] + 20;
+            }
+            grid = new SegmentGrid(x1, y1, x2, y2, count);
+        }
+    }
+
+    // Buffers for the nodes and calls found in a tile, grown to the largest scene painted on the thread
+    private static final class Scratch {
+        private int[] nodes = new int[0];
+        private int[] segments = new int[0];
+
+        int[] nodes(int size) {
+            if (nodes.length < size) nodes = new int[size];
+            return nodes;
+        }
+
+        int[] segments(int size) {
+            if (segments.length < size) segments = new int[size];
+            return segments;
+        }
+    }
+
+    // Calls grouped by the grid cells of their caller and callee, both ways together, each bundle running
+    // between the centres of its two cells; calls within a cell are left out. Made once per zoom, with the
+    // strokes of each width at that zoom.
+    private static final class Bundles {
+        final int size;
+        final double[] x1, y1, x2, y2;
+        final int[] count;
+        final SegmentGrid grid;
+        final Stroke[] strokes = new Stroke[CallGraphScene.MAX_BUNDLE_WIDTH + 1];
+
+        Bundles(CallGraphScene scene, double zoom) {
+            double cell = CallGraphScene.BUNDLE_CELL / zoom;
+            Map<Long, Integer> cells = new HashMap<>();
+            Map<Long, Integer> pairs = new LinkedHashMap<>();
+            List<double[]> ends = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            for (int e = 0; e < scene.edgeFrom.length; e++) {
+                long from = cellOf(scene, scene.edgeFrom[e], cell), to = cellOf(scene, scene.edgeTo[e], cell);
+                if (from == to) continue;
+                int a = cells.computeIfAbsent(Math.min(from, to), c -> cells.size());
+                int b = cells.computeIfAbsent(Math.max(from, to), c -> cells.size());
+                Integer bundle = pairs.get(((long) a << 32) | b);
+                if (bundle == null) {
+                    pairs.put(((long) a << 32) | b, ends.size());
+                    ends.add(new double[] {centre(Math.min(from, to) >> 32, cell), centre((int) Math.min(from, to), cell),
+                            centre(Math.max(from, to) >> 32, cell), centre((int) Math.max(from, to), cell)});
+                    counts.add(1);
+                } else {
+                    counts.set(bundle, counts.get(bundle) + 1);
+                }
+            }
+            size = ends.size();
+            x1 = new double[size];
+            y1 = new double[size];
+            x2 = new double[size];
+            y2 = new double[size];
+            count = new int[size];
+            for (int b = 0; b < size; b++) {
+                double[] end = ends.get(b);
+                x1[b] = end[0];
+                y1[b] = end[1];
+                x2[b] = end[2];
+                y2[b] = end[3];
+                count[b] = counts.get(b);
+            }
+            // the lines are drawn at the integer points the grid is over
+            int[] ix1 = new int[size], iy1 = new int[size], ix2 = new int[size], iy2 = new int[size];
+            for (int b = 0; b < size; b++) {
+                ix1[b] = (int) x1[b];
+                iy1[b] = (int) y1[b];
+                ix2[b] = (int) x2[b];
+                iy2[b] = (int) y2[b];
+            }
+            grid = new SegmentGrid(ix1, iy1, ix2, iy2, size);
+            for (int width = 0; width < strokes.length; width++) strokes[width] = new BasicStroke((float) (width / zoom));
+        }
+
+        // the cell of a node's centre, column in the high half
+        private static long cellOf(CallGraphScene scene, int node, double cell) {
+            long column = (long) Math.floor((scene.x[node] + scene.width[node] / 2) / cell);
+            long row = (long) Math.floor((scene.y[node] + NODE_HEIGHT / 2) / cell);
+            return (column << 32) | (row & 0xffffffffL);
+        }
+
+        private static double centre(long index, double cell) {
+            return (index + 0.5) * cell;
         }
     }
 
-    private void drawArrow(Graphics2D g2d, int x1, int y1, int x2, int y2) {
+    private static void drawArrow(Graphics2D g2d, int x1, int y1, int x2, int y2) {
         g2d.drawLine(x1, y1, x2, y2);
-        int arrowSize = 10;
+        int arrowSize = ARROW_SIZE;
         double angle = Math.atan2(y2 - y1, x2 - x1);
         int x3 = x2 - (int) (arrowSize * Math.cos(angle - Math.PI / 6));
         int y3 = y2 - (int) (arrowSize * Math.sin(angle - Math.PI / 6));
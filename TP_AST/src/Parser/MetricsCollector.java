@@ -1,19 +1,15 @@
 package Parser;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import org.eclipse.jdt.core.dom.CompilationUnit;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.MethodInvocation;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
-import Visitors.AttributeCounterVisitor;
-import Visitors.ClassCounterVisitor;
-import Visitors.MethodDeclarationVisitor;
-import Visitors.MethodInvocationVisitor;
+import Visitors.UnitMetricsVisitor;
 
 public class MetricsCollector {
-    public static class MethodInfo {
+    public static class MethodInfo implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         String className;
         String methodName;
         int lineCount;
@@ -27,119 +23,53 @@ public class MetricsCollector {
         }
     }
 
-    public static int countClassInfo(CompilationUnit parse, String fileName) {
-        ClassCounterVisitor visitor = new ClassCounterVisitor();
-        parse.accept(visitor);
-        return visitor.getClassCount();
-    }
-
-    public static int countMethodInfo(CompilationUnit parse) {
-        MethodDeclarationVisitor visitor = new MethodDeclarationVisitor();
+    // Fills a FileAnalysis from a single traversal of the unit; produces the same
+    // counts, call graph entries and logs as the separate count/collect/print passes
+    public static void collectUnitMetrics(CompilationUnit parse, String packageName, FileAnalysis analysis) {
+        UnitMetricsVisitor visitor = new UnitMetricsVisitor(parse, packageName, analysis.tier.buildsCallGraph());
         parse.accept(visitor);
-        return visitor.getMethods().size();
-    }
-
-    public static int countAttributeInfo(CompilationUnit parse) {
-        AttributeCounterVisitor visitor = new AttributeCounterVisitor();
-        parse.accept(visitor);
-        return visitor.getAttributeCount();
-    }
-
-    public static void collectClassMetrics(CompilationUnit parse, String packageName, 
-            Map<String, Integer> classMethodCounts, Map<String, Integer> classAttributeCounts, 
-            Map<String, List<MethodInfo>> classMethodLineCounts, 
-            List<MethodInfo> maxParameterMethods, int[] maxParameterCount,
-            Map<String, List<String>> methodCallGraph) {
-        class ClassMetricsVisitor extends ClassCounterVisitor {
-            private final CompilationUnit compilationUnit;
-            private final String packageName;
-            private final Map<String, Integer> methodCounts;
-            private final Map<String, Integer> attributeCounts;
-            private final Map<String, List<MethodInfo>> methodLineCounts;
-            private final List<MethodInfo> maxParameterMethods;
-            private final int[] maxParameterCount;
-            private final Map<String, List<String>> methodCallGraph;
-
-            ClassMetricsVisitor(CompilationUnit compilationUnit, String packageName, 
-                    Map<String, Integer> methodCounts, Map<String, Integer> attributeCounts, 
-                    Map<String, List<MethodInfo>> methodLineCounts, 
-                    List<MethodInfo> maxParameterMethods, int[] maxParameterCount,
-                    Map<String, List<String>> methodCallGraph) {
-                this.compilationUnit = compilationUnit;
-                this.packageName = packageName;
-                this.methodCounts = methodCounts;
-                this.attributeCounts = attributeCounts;
-                this.methodLineCounts = methodLineCounts;
-                this.maxParameterMethods = maxParameterMethods;
-                this.maxParameterCount = maxParameterCount;
-                this.methodCallGraph = methodCallGraph;
-            }
 
-            @Override
-            public boolean visit(TypeDeclaration node) {
-                String className = node.getName().getFullyQualifiedName();
-                String fullClassName = packageName.equals("[default]") ? className : packageName + "." + className;
-
-                MethodDeclarationVisitor methodVisitor = new MethodDeclarationVisitor();
-                node.accept(methodVisitor);
-                int methodCount = methodVisitor.getMethods().size();
-                methodCounts.put(fullClassName, methodCount);
-
-                List<MethodInfo> methodInfos = new ArrayList<>();
-                for (MethodDeclaration method : methodVisitor.getMethods()) {
-                    String methodName = method.getName().toString();
-                    String fullMethodName = fullClassName + "." + methodName;
-
-                    int startLine = compilationUnit.getLineNumber(method.getStartPosition());
-                    int endLine = compilationUnit.getLineNumber(method.getStartPosition() + method.getLength());
-                    int lineCount = endLine - startLine + 1;
-
-                    int paramCount = method.parameters().size();
-                    if (paramCount > maxParameterCount[0]) {
-                        maxParameterCount[0] = paramCount;
-                        maxParameterMethods.clear();
-                        maxParameterMethods.add(new MethodInfo(fullClassName, methodName, lineCount, paramCount));
-                    } else if (paramCount == maxParameterCount[0]) {
-                        maxParameterMethods.add(new MethodInfo(fullClassName, methodName, lineCount, paramCount));
-                    }
-
-                    methodInfos.add(new MethodInfo(fullClassName, methodName, lineCount, paramCount));
-
-                    MethodInvocationVisitor invocationVisitor = new MethodInvocationVisitor();
-                    method.accept(invocationVisitor);
-                    List<String> calledMethods = new ArrayList<>();
-                    for (MethodInvocation invocation : invocationVisitor.getMethods()) {
-                        String calledMethodName = invocation.getName().toString();
-                        System.out.println("Found invocation: " + calledMethodName + " in " + fullMethodName);
-                        if (invocation.resolveMethodBinding() != null && invocation.resolveMethodBinding().getDeclaringClass() != null) {
-                            String declaringClass = invocation.resolveMethodBinding().getDeclaringClass().getQualifiedName();
-                            if (!declaringClass.startsWith("java.")) {
-                                String calledFullName = declaringClass + "." + calledMethodName;
-                                calledMethods.add(calledFullName);
-                                System.out.println("Resolved call: " + fullMethodName + " -> " + calledFullName);
-                            }
-                        } else {
-                            calledMethods.add("[unresolved]." + calledMethodName);
-                            System.out.println("Unresolved call: " + fullMethodName + " -> [unresolved]." + calledMethodName);
-                        }
+        analysis.classCount = visitor.getClassCount();
+        analysis.methodCount = visitor.getMethods().size();
+        analysis.attributeCount = visitor.getAttributeCount();
+
+        for (UnitMetricsVisitor.TypeFacts type : visitor.getTypes()) {
+            analysis.classMethodCounts.put(type.name, type.methods.size());
+
+            List<MethodInfo> methodInfos = new ArrayList<>();
+            for (UnitMetricsVisitor.MethodFacts method : type.methods) {
+                String fullMethodName = type.name + "." + method.name;
+                MethodInfo info = new MethodInfo(type.name, method.name, method.lineCount, method.parameterCount);
+                if (method.parameterCount > analysis.maxParameterCount[0]) {
+                    analysis.maxParameterCount[0] = method.parameterCount;
+                    analysis.maxParameterMethods.clear();
+                    analysis.maxParameterMethods.add(info);
+                } else if (method.parameterCount == analysis.maxParameterCount[0]) {
+                    analysis.maxParameterMethods.add(info);
+                }
+                methodInfos.add(info);
+
+                List<String> calledMethods = new ArrayList<>();
+                List<String> receivers = new ArrayList<>();
+                // each invocation is already in the unit's invocation log
+                for (UnitMetricsVisitor.InvocationFacts invocation : method.invocations) {
+                    if (invocation.resolved) {
+                        if (invocation.callee != null) calledMethods.add(invocation.callee);
+                    } else {
+                        calledMethods.add(invocation.callee);
+                        receivers.add(invocation.receiver);
                     }
-                    methodCallGraph.put(fullMethodName, calledMethods);
-                    System.out.println("Updated methodCallGraph for " + fullMethodName + ": " + calledMethods);
                 }
-                methodLineCounts.put(fullClassName, methodInfos);
-
-                AttributeCounterVisitor attributeVisitor = new AttributeCounterVisitor();
-                node.accept(attributeVisitor);
-                attributeCounts.put(fullClassName, attributeVisitor.getAttributeCount());
-
-                super.visit(node);
-                return true;
+                analysis.methodCallGraph.put(fullMethodName, calledMethods);
+                // without bindings every call is unresolved here, so receivers lines up with calledMethods
+                if (analysis.tier == AnalysisTier.SYNTACTIC_CALLS) analysis.callReceivers.put(fullMethodName, receivers);
             }
+            analysis.classMethodLineCounts.put(type.name, methodInfos);
+            analysis.classAttributeCounts.put(type.name, type.attributeCount);
         }
 
-        ClassMetricsVisitor visitor = new ClassMetricsVisitor(parse, packageName, 
-                classMethodCounts, classAttributeCounts, classMethodLineCounts, 
-                maxParameterMethods, maxParameterCount, methodCallGraph);
-        parse.accept(visitor);
+        analysis.methodInfo = visitor.getMethodLog();
+        analysis.variableInfo = visitor.getVariableLog();
+        analysis.invocationInfo = visitor.getInvocationLog();
     }
-}
\ No newline at end of file
+}
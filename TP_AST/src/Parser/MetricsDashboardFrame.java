@@ -1,24 +1,45 @@
 // src/Parser/MetricsDashboardFrame.java
 package Parser;
 
+import TP2.CallGraph;
+import TP2.CouplingGraph;
+import TP2.CouplingGraphFrame;
+import TP2.CouplingMatrix;
+import TP2.Dendrogram;
 import TP2.DendrogramFrame;
-import TP2.ModuleIdentifier;
+import TP2.Linkage;
+import TP2.LouvainClustering;
 import TP2.SpoonAnalyzer;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class MetricsDashboardFrame extends JFrame {
     private final ParserLogic parserLogic;
     private JPanel metricsPanel;
+    private JTextArea logArea;
+    private CouplingMatrix couplingMatrix;
+    private final Map<Linkage, Dendrogram> dendrograms = new EnumMap<>(Linkage.class);
+    private final List<CallGraphFrame> callGraphFrames = new ArrayList<>();
+    private final List<CouplingGraphFrame> couplingGraphFrames = new ArrayList<>();
+    private final List<DendrogramFrame> dendrogramFrames = new ArrayList<>();
+    private SourceWatcher sourceWatcher;
+    // bumped when a file is reanalyzed, so a clustering started before is shown but not cached
+    private int generation;
+    // the open views being rebuilt after the last reanalyzed file, cancelled by the next one
+    private BackgroundAnalysis<Refresh> refreshing;
 
     public MetricsDashboardFrame(ParserLogic parserLogic) {
         this.parserLogic = parserLogic;
-        setTitle("Metrics Dashboard");
+        setTitle("Metrics Dashboard - " + parserLogic.getAnalysisTier());
         setSize(1000, 700);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
@@ -65,14 +86,18 @@ public class MetricsDashboardFrame extends JFrame {
         showGraphButton.addActionListener(new ShowGraphActionListener());
         buttonPanel.add(showGraphButton);
 
+        // Linkage criterion used by the modules, Spoon and dendrogram actions
+        JComboBox<Linkage> linkageCombo = new JComboBox<>(Linkage.values());
+        linkageCombo.setSelectedItem(Linkage.AVERAGE);
+        linkageCombo.setToolTipText("HAC linkage");
+        buttonPanel.add(linkageCombo);
+
      // Show Modules (JDT) → ALL CLASSES
         JButton modulesBtn = new JButton("Show All Modules (JDT)");
         modulesBtn.setBackground(new Color(0, 150, 100));
         modulesBtn.setForeground(Color.WHITE);
-        modulesBtn.addActionListener(e -> {
-            var calls = toCalls(parserLogic.getMethodCallGraph());
-            var matrix = buildCouplingMatrix(calls);
-            var modules = ModuleIdentifier.identifyModules(matrix, 0.02);
+        modulesBtn.addActionListener(e -> withDendrogram((Linkage) linkageCombo.getSelectedItem(), "All modules", dendrogram -> {
+            var modules = dendrogram.cutAt(0.02);
             StringBuilder sb = new StringBuilder("=== ALL MODULES (JDT) ===\n");
             for (int i = 0; i < modules.size(); i++) {
                 sb.append("Module ").append(i + 1).append(": ")
@@ -84,16 +109,36 @@ public class MetricsDashboardFrame extends JFrame {
                 "All Identified Modules",
                 JOptionPane.INFORMATION_MESSAGE
             );
-        });
+        }));
         buttonPanel.add(modulesBtn);
 
+        // Louvain modules (JDT): modularity on the sparse coupling graph, no linkage nor threshold
+        JButton louvainBtn = new JButton("Louvain Modules (JDT)");
+        louvainBtn.setBackground(new Color(0, 110, 130));
+        louvainBtn.setForeground(Color.WHITE);
+        louvainBtn.addActionListener(e -> {
+            var matrix = couplingMatrix();
+            BackgroundAnalysis.start(this, "Louvain modules", progress -> LouvainClustering.identifyModules(matrix), modules -> {
+                StringBuilder sb = new StringBuilder("=== LOUVAIN MODULES (JDT) ===\n");
+                for (int i = 0; i < modules.size(); i++) {
+                    sb.append("Module ").append(i + 1).append(": ")
+                      .append(modules.get(i)).append("\n");
+                }
+                JOptionPane.showMessageDialog(
+                    null,
+                    new JScrollPane(new JTextArea(sb.toString())),
+                    "Louvain Modules",
+                    JOptionPane.INFORMATION_MESSAGE
+                );
+            });
+        });
+        buttonPanel.add(louvainBtn);
+
         // Spoon Analysis (Full HAC + Dendrogram)
         JButton spoonBtn = new JButton("Spoon Analysis (HAC)");
         spoonBtn.setBackground(new Color(200, 0, 100));
         spoonBtn.setForeground(Color.WHITE);
-        spoonBtn.addActionListener(e -> {
-            SwingUtilities.invokeLater(() -> SpoonAnalyzer.main(new String[]{}));
-        });
+        spoonBtn.addActionListener(e -> SpoonAnalyzer.run((Linkage) linkageCombo.getSelectedItem()));
         buttonPanel.add(spoonBtn);
 
         // Show Dendrogram (JDT)
@@ -101,36 +146,130 @@ public class MetricsDashboardFrame extends JFrame {
         dendroBtn.setBackground(new Color(120, 0, 200));
         dendroBtn.setForeground(Color.WHITE);
         dendroBtn.setFont(new Font("Arial", Font.BOLD, 12));
-        dendroBtn.addActionListener(e -> {
-            var calls = toCalls(parserLogic.getMethodCallGraph());
-            var matrix = buildCouplingMatrix(calls);
-            var root = ModuleIdentifier.buildDendrogram(matrix, 0.02);
-            new DendrogramFrame(root);
-        });
+        dendroBtn.addActionListener(e -> withDendrogram((Linkage) linkageCombo.getSelectedItem(), "Dendrogram",
+                dendrogram -> track(dendrogramFrames, new DendrogramFrame(dendrogram))));
         buttonPanel.add(dendroBtn);
 
+        // Show Coupling Graph (JDT)
+        JButton couplingBtn = new JButton("Show Coupling Graph (JDT)");
+        couplingBtn.setBackground(new Color(0, 120, 215));
+        couplingBtn.setForeground(Color.WHITE);
+        couplingBtn.addActionListener(e -> track(couplingGraphFrames, new CouplingGraphFrame(couplingMatrix())));
+        buttonPanel.add(couplingBtn);
+
+        if (parserLogic.getAnalysisTier() == AnalysisTier.METRICS_ONLY) {
+            for (JButton button : new JButton[] { showGraphButton, modulesBtn, dendroBtn, couplingBtn }) {
+                button.setEnabled(false);
+                button.setToolTipText("No call graph in the " + AnalysisTier.METRICS_ONLY + " tier");
+            }
+        }
+
+        // Watch mode: re-analyze saved files and refresh the open views
+        JToggleButton watchBtn = new JToggleButton("Watch Sources");
+        watchBtn.setBackground(new Color(200, 120, 0));
+        watchBtn.setForeground(Color.WHITE);
+        watchBtn.addActionListener(e -> setWatching(watchBtn.isSelected(), watchBtn));
+        buttonPanel.add(watchBtn);
+
         dashboardPanel.add(buttonPanel, BorderLayout.SOUTH);
 
         // === LOG PANEL ===
         JPanel logPanel = new JPanel(new BorderLayout());
-        JTextArea logArea = new JTextArea();
+        logArea = new JTextArea();
         logArea.setEditable(false);
         logArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         logArea.setBackground(new Color(40, 40, 50));
         logArea.setForeground(Color.WHITE);
         JScrollPane logScrollPane = new JScrollPane(logArea);
         logPanel.add(logScrollPane, BorderLayout.CENTER);
+        refreshLogs();
+
+        tabbedPane.addTab("Dashboard", dashboardPanel);
+        tabbedPane.addTab("AST Logs", logPanel);
+
+        add(tabbedPane);
+        setVisible(true);
+    }
+
+    private void refreshLogs() {
         logArea.setText(
             parserLogic.getMethodInfo() + "\n" +
             parserLogic.getVariableInfo() + "\n" +
             parserLogic.getInvocationInfo()
         );
+    }
 
-        tabbedPane.addTab("Dashboard", dashboardPanel);
-        tabbedPane.addTab("AST Logs", logPanel);
+    // === WATCH MODE ===
+    private void setWatching(boolean watching, JToggleButton watchBtn) {
+        try {
+            if (watching && sourceWatcher == null) {
+                sourceWatcher = new SourceWatcher(parserLogic, this::onFileReanalyzed);
+                sourceWatcher.start();
+            } else if (!watching && sourceWatcher != null) {
+                sourceWatcher.close();
+                sourceWatcher = null;
+            }
+        } catch (IOException ex) {
+            watchBtn.setSelected(false);
+            JOptionPane.showMessageDialog(this, "Cannot watch sources: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
 
-        add(tabbedPane);
-        setVisible(true);
+    // Runs on the EDT once ParserLogic has swapped in the new facts of a single file
+    private void onFileReanalyzed(ParserLogic.CallGraphDelta delta) {
+        generation++;
+        couplingMatrix = null;
+        dendrograms.clear();
+        populateMetricsPanel();
+        refreshLogs();
+
+        for (CallGraphFrame frame : callGraphFrames) frame.refresh(parserLogic.getCallGraph());
+        refreshClusteringViews();
+    }
+
+    private record Refresh(CouplingMatrix matrix, Map<Linkage, Dendrogram> dendrograms) {}
+
+    // Rebuilds the coupling matrix and the dendrograms of the open views on a worker thread, as
+    // withDendrogram does; a refresh overtaken by another reanalyzed file is dropped
+    private void refreshClusteringViews() {
+        if (refreshing != null) refreshing.cancel(true);
+        refreshing = null;
+        if (couplingGraphFrames.isEmpty() && dendrogramFrames.isEmpty()) return;
+        CallGraph callGraph = parserLogic.getCallGraph();
+        Set<Linkage> linkages = EnumSet.noneOf(Linkage.class);
+        for (DendrogramFrame frame : dendrogramFrames) linkages.add(frame.getLinkage());
+        int startedAt = generation;
+        refreshing = BackgroundAnalysis.start(this, "Refreshing modules", progress -> {
+            progress.onProgress("Computing coupling", 0, 0);
+            CouplingMatrix coupling = CouplingGraph.buildCouplingMatrix(callGraph, this::isProjectClass);
+            Map<Linkage, Dendrogram> built = new EnumMap<>(Linkage.class);
+            for (Linkage linkage : linkages) {
+                Cancellation.checkCancelled();
+                progress.onProgress("Clustering classes (" + linkage + ")", 0, 0);
+                built.put(linkage, Dendrogram.build(coupling, linkage));
+            }
+            return new Refresh(coupling, built);
+        }, refresh -> {
+            if (generation != startedAt) return;
+            couplingMatrix = refresh.matrix();
+            dendrograms.putAll(refresh.dendrograms());
+            for (CouplingGraphFrame frame : couplingGraphFrames) frame.updateMatrix(refresh.matrix());
+            for (DendrogramFrame frame : dendrogramFrames) {
+                Dendrogram dendrogram = refresh.dendrograms().get(frame.getLinkage());
+                // a view opened while the refresh ran already shows the new graph
+                if (dendrogram != null) frame.updateDendrogram(dendrogram);
+            }
+        });
+    }
+
+    private <T extends JFrame> void track(List<T> frames, T frame) {
+        frames.add(frame);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                frames.remove(frame);
+            }
+        });
     }
 
     // === METRICS ===
@@ -161,6 +300,7 @@ public class MetricsDashboardFrame extends JFrame {
         addMetricCard("Avg Methods/Class", String.format("%.2f", totalClasses > 0 ? (double) totalMethods / totalClasses : 0.0));
         addMetricCard("Avg Lines/Method", String.format("%.2f", totalMethods > 0 ? (double) totalLines / totalMethods : 0.0));
         addMetricCard("Avg Attributes/Class", String.format("%.2f", totalClasses > 0 ? (double) totalAttributes / totalClasses : 0.0));
+        addMetricCard("Analysis Tier", parserLogic.getAnalysisTier().toString());
 
         metricsPanel.revalidate();
         metricsPanel.repaint();
@@ -239,34 +379,54 @@ public class MetricsDashboardFrame extends JFrame {
     private class ShowGraphActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            new CallGraphFrame(parserLogic.getMethodCallGraph()).setVisible(true);
+            CallGraphFrame frame = new CallGraphFrame(parserLogic.getCallGraph());
+            frame.setVisible(true);
+            track(callGraphFrames, frame);
         }
     }
 
-    // === IN-PLACE COUPLING LOGIC (NO COUPLINGGRAPH) ===
- // In buildCouplingMatrix() and toCalls()
- // === IN-PLACE COUPLING LOGIC ===
-    private List<Call> toCalls(Map<String, List<String>> graph) {
-        List<Call> calls = new ArrayList<>();
-        for (var e : graph.entrySet()) {
-            String caller = extractClass(e.getKey());
-            if (caller == null || isExternal(caller)) continue;
-            for (String callee : e.getValue()) {
-                String calleeClass = extractClass(callee);
-                if (calleeClass == null || isExternal(calleeClass)) continue;
-                calls.add(new Call(caller, calleeClass));
-            }
+    // Shared by the modules, dendrogram and coupling graph actions; rebuilt from the call graph after a
+    // file is reanalyzed in watch mode
+    private CouplingMatrix couplingMatrix() {
+        if (couplingMatrix == null) {
+            couplingMatrix = CouplingGraph.buildCouplingMatrix(parserLogic.getCallGraph(), this::isProjectClass);
         }
-        return calls;
+        return couplingMatrix;
     }
 
-    private String extractClass(String methodFQN) {
-        if (methodFQN == null || methodFQN.isEmpty()) return null;
-        int lastDot = methodFQN.lastIndexOf('.');
-        if (lastDot <= 0) return null;
-        int secondLastDot = methodFQN.lastIndexOf('.', lastDot - 1);
-        if (secondLastDot <= 0) return null;
-        return methodFQN.substring(0, secondLastDot);
+    private record Clustering(CouplingMatrix matrix, Dendrogram dendrogram) {}
+
+    // Hands the dendrogram for the linkage to show on the EDT; the coupling matrix, when not cached yet,
+    // and the HAC are built on a worker thread
+    private void withDendrogram(Linkage linkage, String title, Consumer<Dendrogram> show) {
+        Dendrogram cached = dendrograms.get(linkage);
+        if (cached != null) {
+            show.accept(cached);
+            return;
+        }
+        CouplingMatrix matrix = couplingMatrix;
+        CallGraph callGraph = matrix == null ? parserLogic.getCallGraph() : null;
+        int startedAt = generation;
+        BackgroundAnalysis.start(this, title, progress -> {
+            CouplingMatrix coupling = matrix;
+            if (coupling == null) {
+                progress.onProgress("Computing coupling", 0, 0);
+                coupling = CouplingGraph.buildCouplingMatrix(callGraph, this::isProjectClass);
+            }
+            progress.onProgress("Clustering classes", 0, 0);
+            return new Clustering(coupling, Dendrogram.build(coupling, linkage));
+        }, clustering -> {
+            if (generation == startedAt) {
+                couplingMatrix = clustering.matrix();
+                dendrograms.put(linkage, clustering.dendrogram());
+            }
+            show.accept(clustering.dendrogram());
+        });
+    }
+
+    // JDK and library classes, anonymous classes ("") and binary nested names are left out of the coupling
+    private boolean isProjectClass(String className) {
+        return !className.isEmpty() && !isExternal(className);
     }
 
     private boolean isExternal(String className) {
@@ -277,36 +437,4 @@ public class MetricsDashboardFrame extends JFrame {
                className.startsWith("org.") ||
                className.contains("$"); // inner classes
     }
-
-    private Map<String, Map<String, Double>> buildCouplingMatrix(List<Call> calls) {
-        Set<String> classes = new HashSet<>();
-        Map<String, Map<String, Integer>> count = new HashMap<>();
-
-        for (Call call : calls) {
-            String c1 = call.caller();
-            String c2 = call.callee();
-            if (c1.equals(c2)) continue;
-
-            classes.add(c1);
-            classes.add(c2);
-            count.computeIfAbsent(c1, k -> new HashMap<>()).merge(c2, 1, Integer::sum);
-        }
-
-        Map<String, Map<String, Double>> matrix = new HashMap<>();
-        for (String c1 : classes) {
-            Map<String, Double> row = new HashMap<>();
-            int out = count.getOrDefault(c1, Map.of()).values().stream().mapToInt(Integer::intValue).sum();
-            for (String c2 : classes) {
-                if (c1.equals(c2)) continue;
-                int in = count.getOrDefault(c2, Map.of()).getOrDefault(c1, 0);
-                int links = count.getOrDefault(c1, Map.of()).getOrDefault(c2, 0) + in;
-                row.put(c2, links > 0 ? (double) links / (out + in + 1) : 0.0);
-            }
-            matrix.put(c1, row);
-        }
-        return matrix;
-    }
-
-    // Local Call record (no external dependency)
-    record Call(String caller, String callee) {}
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package Parser;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+// Uniform grid over node rectangles, for hit tests and viewport queries that do not scan every node.
+// A rectangle is entered in each cell it overlaps and the cells are laid out as CSR, so a point query
+// reads one cell and a rectangle query the cells it covers, reporting each node from the first of them
+// it is in. Cells are sized so there are about as many as nodes. The grid is never modified after it is
+// built, so any number of threads may query it.
+final class NodeGrid {
+    private final int originX, originY;
+    private final int cellSize;
+    private final int columns, rows;
+    private final int[] cellStart;
+    private final int[] cellNodes;
+    private final int[] x, y, width, height;
+
+    NodeGrid(int[] x, int[] y, int[] width, int[] height, int count) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i] + width[i]);
+            maxY = Math.max(maxY, y[i] + height[i]);
+        }
+        if (count == 0) minX = minY = maxX = maxY = 0;
+        originX = minX;
+        originY = minY;
+        double area = (double) (maxX - minX + 1) * (maxY - minY + 1);
+        cellSize = (int) Math.max(16, Math.ceil(Math.sqrt(area / Math.max(1, count))));
+        columns = (maxX - minX) / cellSize + 1;
+        rows = (maxY - minY) / cellSize + 1;
+
+        // count, prefix sum, then fill
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < count; i++) {
+            for (int r = row(y[i]); r <= row(y[i] + height[i]); r++) {
+                for (int c = column(x[i]); c <= column(x[i] + width[i]); c++) cellStart[r * columns + c + 1]++;
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) cellStart[cell + 1] += cellStart[cell];
+        cellNodes = new int[cellStart[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < count; i++) {
+            for (int r = row(y[i]); r <= row(y[i] + height[i]); r++) {
+                for (int c = column(x[i]); c <= column(x[i] + width[i]); c++) {
+                    int cell = r * columns + c;
+                    cellNodes[cellStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    // The last node whose rectangle contains the point, which is the one drawn on top, or -1
+    int nodeAt(int px, int py) {
+        int c = (px - originX) / cellSize, r = (py - originY) / cellSize;
+        if (px < originX || py < originY || c >= columns || r >= rows) return -1;
+        int cell = r * columns + c;
+        int found = -1;
+        for (int e = cellStart[cell]; e < cellStart[cell + 1]; e++) {
+            int i = cellNodes[e];
+            if (i > found && px >= x[i] && px <= x[i] + width[i] && py >= y[i] && py <= y[i] + height[i]) found = i;
+        }
+        return found;
+    }
+
+    // Writes the nodes whose rectangle intersects area to out, in drawing order, and returns their count
+    int nodesIn(Rectangle area, int[] out) {
+        int count = 0;
+        int fromColumn = column(area.x), toColumn = column(area.x + area.width);
+        int fromRow = row(area.y), toRow = row(area.y + area.height);
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = fromColumn; c <= toColumn; c++) {
+                int cell = r * columns + c;
+                for (int e = cellStart[cell]; e < cellStart[cell + 1]; e++) {
+                    int i = cellNodes[e];
+                    if (c != Math.max(fromColumn, column(x[i])) || r != Math.max(fromRow, row(y[i]))) continue;
+                    if (x[i] <= area.x + area.width && x[i] + width[i] >= area.x
+                            && y[i] <= area.y + area.height && y[i] + height[i] >= area.y) {
+                        out[count++] = i;
+                    }
+                }
+            }
+        }
+        Arrays.sort(out, 0, count);
+        return count;
+    }
+
+    private int column(int px) {
+        return Math.max(0, Math.min(columns - 1, (px - originX) / cellSize));
+    }
+
+    private int row(int py) {
+        return Math.max(0, Math.min(rows - 1, (py - originY) / cellSize));
+    }
+}
@@ -1,9 +1,17 @@
 package Parser;
 
+import java.io.File;
+
 public class ParserConfig {
     public static final String PROJECT_PATH = "C:\\Users\\majdi\\Desktop\\TP\\TP_Evolution_Restructuration\\CarsFactory";
     public static final String PROJECT_SOURCE_PATH = PROJECT_PATH + "\\src";
     public static final String JRE_PATH = "C:\\Program Files\\Java\\jdk-25";
+    public static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    public static final String CACHE_DIRECTORY = System.getProperty("user.home") + File.separator + ".tp_ast_cache";
+    // HAC pair tables too large for the heap are memory-mapped from a temporary file here
+    public static final String HAC_SPILL_DIRECTORY = System.getProperty("java.io.tmpdir");
+    // force-directed layouts start from this seed, so the same graph is always laid out the same way
+    public static final long LAYOUT_SEED = 42L;
 
     public static int getMethodThreshold() {
         return 0; // Default to 0, handled by UI input
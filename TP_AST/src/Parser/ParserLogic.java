@@ -1,19 +1,43 @@
 package Parser;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.io.FileUtils;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import TP2.CallGraph;
+import TP2.SymbolTable;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
 
 public class ParserLogic {
     private final String projectSourcePath;
     private final String jrePath;
+    private final int threadCount;
+    private final AnalysisTier tier;
+    private String cacheDirectory;
+    private ProgressListener progressListener = ProgressListener.NONE;
+    private String phase;
+    private int phaseTotal;
+    private final AtomicInteger phaseDone = new AtomicInteger();
     private int totalClasses = 0;
     private int totalLines = 0;
     private int totalMethods = 0;
@@ -24,44 +48,417 @@ public class ParserLogic {
     private Map<String, List<MetricsCollector.MethodInfo>> classMethodLineCounts = new HashMap<>();
     private int[] maxParameterCount = {0};
     private List<MetricsCollector.MethodInfo> maxParameterMethods = new ArrayList<>();
-    private Map<String, List<String>> methodCallGraph = new HashMap<>();
-    private StringBuilder methodInfo = new StringBuilder();
-    private StringBuilder variableInfo = new StringBuilder();
-    private StringBuilder invocationInfo = new StringBuilder();
-    private static Map<String, List<String>> staticMethodCallGraph;
+    private final Map<String, FileAnalysis> fileAnalyses = new LinkedHashMap<>();
+    // Every method name declared or called, held once however many files mention it. The files keep their
+    // calls as ids of this table once merged. Building the call graph renumbers it to the names still in use
+    // and hands it to the graph, so it is copied before anything is interned again.
+    private SymbolTable names = new SymbolTable();
+    // by method id, the file whose entry for the method is in the call graph: the last one declaring it
+    private FileAnalysis[] methodOwners = new FileAnalysis[1024];
+    private CallGraph callGraph;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Call graph entries dropped and added when one file was re-analyzed in watch mode
+    public record CallGraphDelta(String filePath, Map<String, List<String>> removed, Map<String, List<String>> added) {}
 
     public ParserLogic(String projectSourcePath, String jrePath) {
+        this(projectSourcePath, jrePath, 1);
+    }
+
+    public ParserLogic(String projectSourcePath, String jrePath, int threadCount) {
+        this(projectSourcePath, jrePath, threadCount, AnalysisTier.FULL_BINDINGS);
+    }
+
+    public ParserLogic(String projectSourcePath, String jrePath, int threadCount, AnalysisTier tier) {
         this.projectSourcePath = projectSourcePath;
         this.jrePath = jrePath;
+        this.threadCount = Math.max(1, threadCount);
+        this.tier = tier;
     }
 
+    // Enables the content-hash cache: unchanged files reuse their stored facts instead of being parsed
+    public void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    // Receives files done out of total for each phase of parseProject; cancel by interrupting the parsing thread
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener != null ? progressListener : ProgressListener.NONE;
+    }
+
+    // Throws CancellationException once the thread running parseProject has been interrupted
     public void parseProject() throws IOException {
-        File folder = new File(projectSourcePath);
-        ArrayList<File> javaFiles = FileProcessor.listJavaFilesForFolder(folder);
+        startPhase("Listing source files", 0);
+        List<Path> javaFiles = FileProcessor.listJavaFiles(Paths.get(projectSourcePath));
+        String[] sourceFilePaths = new String[javaFiles.size()];
+        for (int i = 0; i < javaFiles.size(); i++) {
+            sourceFilePaths[i] = javaFiles.get(i).toString();
+        }
+
+        if (cacheDirectory == null) {
+            startPhase("Parsing", sourceFilePaths.length);
+            if (threadCount == 1) {
+                parseChunk(sourceFilePaths, null, this::merge);
+            } else {
+                mergeAll(analyzeFiles(sourceFilePaths, null));
+            }
+        } else {
+            mergeAll(analyzeIncrementally(sourceFilePaths));
+        }
+        if (tier == AnalysisTier.SYNTACTIC_CALLS) {
+            Cancellation.checkCancelled();
+            startPhase("Resolving calls by name", 0);
+            new CallNameIndex(fileAnalyses.values()).resolve(fileAnalyses.values(), names, null);
+        }
+        callGraph = null;
+    }
+
+    private void startPhase(String phase, int total) {
+        this.phase = phase;
+        this.phaseTotal = total;
+        phaseDone.set(0);
+        progressListener.onProgress(phase, 0, total);
+    }
+
+    // Called from the parsing threads after each file
+    private void fileDone() {
+        progressListener.onProgress(phase, phaseDone.incrementAndGet(), phaseTotal);
+    }
+
+    private FileAnalysis[] analyzeIncrementally(String[] sourceFilePaths) throws IOException {
+        startPhase("Hashing source files", sourceFilePaths.length);
+        String[] hashes = new String[sourceFilePaths.length];
+        // kept for the files parsed again, so JDT's read is the only other one
+        int[] lineCounts = new int[sourceFilePaths.length];
+        for (int i = 0; i < sourceFilePaths.length; i++) {
+            Cancellation.checkCancelled();
+            AnalysisCache.FileDigest digest = AnalysisCache.digestFile(sourceFilePaths[i]);
+            hashes[i] = digest.hash();
+            lineCounts[i] = digest.lineCount();
+            fileDone();
+        }
+
+        AnalysisCache cache = AnalysisCache.load(cacheDirectory, projectSourcePath, jrePath, tier);
+        FileAnalysis[] results = new FileAnalysis[sourceFilePaths.length];
+        List<Integer> changed = cache.reuse(sourceFilePaths, hashes, results);
+        startPhase("Parsing changed files", changed.size());
+        analyzeInto(changed, sourceFilePaths, hashes, lineCounts, results);
+        // without bindings a file's facts never depend on other files: callees are resolved after the merge
+        List<Integer> dependents = tier.resolvesBindings() ? cache.dependents(results, changed) : List.of();
+        startPhase("Parsing dependent files", dependents.size());
+        analyzeInto(dependents, sourceFilePaths, hashes, lineCounts, results);
+        startPhase("Analysis cache: " + changed.size() + " changed, " + dependents.size() + " dependent, "
+                + (sourceFilePaths.length - changed.size() - dependents.size()) + " reused", 0);
+        cache.save(results);
+        return results;
+    }
+
+    private void analyzeInto(List<Integer> indexes, String[] sourceFilePaths, String[] hashes, int[] lineCounts,
+                             FileAnalysis[] results) throws IOException {
+        if (indexes.isEmpty()) return;
+        String[] paths = new String[indexes.size()];
+        int[] pathLineCounts = new int[indexes.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = sourceFilePaths[indexes.get(i)];
+            pathLineCounts[i] = lineCounts[indexes.get(i)];
+        }
+        FileAnalysis[] fresh = analyzeFiles(paths, pathLineCounts);
+        for (int i = 0; i < fresh.length; i++) {
+            int index = indexes.get(i);
+            results[index] = fresh[i];
+            if (fresh[i] != null) fresh[i].contentHash = hashes[index];
+        }
+    }
+
+    private void mergeAll(FileAnalysis[] results) {
+        Cancellation.checkCancelled();
+        startPhase("Merging results", 0);
+        for (FileAnalysis analysis : results) {
+            if (analysis != null) merge(analysis);
+        }
+    }
+
+    // Parses the given files, in parallel chunks when more than one thread is configured, and returns
+    // one FileAnalysis per path in the same order. Workers never touch the shared project totals.
+    // lineCounts, when known from an earlier read, saves counting the lines of each file again.
+    private FileAnalysis[] analyzeFiles(String[] sourceFilePaths, int[] lineCounts) throws IOException {
+        FileAnalysis[] results = new FileAnalysis[sourceFilePaths.length];
+        Map<String, Integer> fileIndex = new HashMap<>();
+        for (int i = 0; i < sourceFilePaths.length; i++) {
+            fileIndex.put(sourceFilePaths[i], i);
+        }
+        ToIntFunction<String> knownLineCount = lineCounts == null ? null : path -> lineCounts[fileIndex.get(path)];
+        if (threadCount == 1 || sourceFilePaths.length < 2) {
+            parseChunk(sourceFilePaths, knownLineCount, analysis -> results[fileIndex.get(analysis.filePath)] = analysis);
+            return results;
+        }
+
+        int chunkSize = (int) Math.ceil(sourceFilePaths.length / (double) (threadCount * CHUNKS_PER_THREAD));
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int start = 0; start < sourceFilePaths.length; start += chunkSize) {
+                String[] chunk = Arrays.copyOfRange(sourceFilePaths, start, Math.min(start + chunkSize, sourceFilePaths.length));
+                futures.add(pool.submit(() -> {
+                    parseChunk(chunk, knownLineCount, analysis -> results[fileIndex.get(analysis.filePath)] = analysis);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Analysis cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof CancellationException) throw (CancellationException) e.getCause();
+            throw new IOException("Parsing failed: " + e.getCause(), e.getCause());
+        } finally {
+            // a cancelled parse returns once the pool's threads have stopped too
+            Cancellation.shutdownAndWait(pool);
+        }
+        return results;
+    }
+
+    private void parseChunk(String[] sourceFilePaths, ToIntFunction<String> knownLineCount, Consumer<FileAnalysis> sink) throws IOException {
+        if (!tier.resolvesBindings()) {
+            // without bindings units share nothing, and a fresh parser per file keeps JDT's comment
+            // recorder from carrying state over from a unit it could not parse; the source is read
+            // once here and counted in the same pass
+            for (String sourceFilePath : sourceFilePaths) {
+                Cancellation.checkCancelled();
+                FileAnalysis analysis = analyzeFile(sourceFilePath);
+                if (analysis != null) sink.accept(analysis);
+                fileDone();
+            }
+            return;
+        }
+        try {
+            ASTParserUtil.parseBatch(sourceFilePaths, projectSourcePath, jrePath, tier, new FileASTRequestor() {
+                @Override
+                public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+                    Cancellation.checkCancelled();
+                    try {
+                        // JDT reads the file itself and does not hand back the text
+                        int lineCount = knownLineCount != null ? knownLineCount.applyAsInt(sourceFilePath)
+                                : FileProcessor.countLines(Paths.get(sourceFilePath));
+                        sink.accept(analyzeUnit(sourceFilePath, ast, lineCount, tier));
+                        fileDone();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static FileAnalysis analyzeUnit(String sourceFilePath, CompilationUnit parse, int lineCount, AnalysisTier tier) {
+        FileAnalysis analysis = new FileAnalysis(sourceFilePath, tier);
+        analysis.lineCount = lineCount;
+
+        analysis.packageName = ASTParserUtil.extractPackageName(parse);
+        MetricsCollector.collectUnitMetrics(parse, analysis.packageName, analysis);
+        return analysis;
+    }
 
-        for (File fileEntry : javaFiles) {
-            String content = FileUtils.readFileToString(fileEntry, "UTF-8");
-            totalLines += FileProcessor.countLines(content);
+    // Parses a single file against the project environment; returns null when the file no longer exists
+    public FileAnalysis analyzeFile(String sourceFilePath) throws IOException {
+        Path path = Paths.get(sourceFilePath);
+        if (!Files.isRegularFile(path)) return null;
+        FileProcessor.SourceFile source = FileProcessor.readSource(path);
+        CompilationUnit parse = ASTParserUtil.parse(source.content(), sourceFilePath, projectSourcePath, jrePath, tier);
+        return analyzeUnit(sourceFilePath, parse, source.lineCount(), tier);
+    }
 
-            CompilationUnit parse = ASTParserUtil.parse(content.toCharArray(), projectSourcePath, jrePath);
+    // Replaces the contribution of one file (null when deleted) in the project totals and call graph
+    // without touching the other files; returns the call graph entries that were removed and added
+    public CallGraphDelta applyFileAnalysis(String sourceFilePath, FileAnalysis analysis) {
+        FileAnalysis previous = fileAnalyses.get(sourceFilePath);
+        unshareNames();
+        if (analysis != null) compact(analysis);
 
-            String packageName = ASTParserUtil.extractPackageName(parse);
-            packages.add(packageName);
+        // the classes and methods either version declares; other files may declare them too
+        Set<String> classes = new HashSet<>();
+        BitSet methods = new BitSet();
+        for (FileAnalysis version : new FileAnalysis[] { previous, analysis }) {
+            if (version == null) continue;
+            classes.addAll(version.classMethodCounts.keySet());
+            for (int method : version.methods) methods.set(method);
+        }
+        Map<String, List<String>> before = entries(methods);
+        // put keeps an edited file at its original position in the merge order
+        if (analysis == null) {
+            fileAnalyses.remove(sourceFilePath);
+        } else {
+            fileAnalyses.put(sourceFilePath, analysis);
+        }
 
-            totalClasses += MetricsCollector.countClassInfo(parse, fileEntry.getName());
-            totalMethods += MetricsCollector.countMethodInfo(parse);
-            totalAttributes += MetricsCollector.countAttributeInfo(parse);
+        if (previous != null) {
+            totalLines -= previous.lineCount;
+            totalClasses -= previous.classCount;
+            totalMethods -= previous.methodCount;
+            totalAttributes -= previous.attributeCount;
+        }
+        if (analysis != null) {
+            totalLines += analysis.lineCount;
+            totalClasses += analysis.classCount;
+            totalMethods += analysis.methodCount;
+            totalAttributes += analysis.attributeCount;
+        }
+        mergeKeys(classes, methods);
 
-            MetricsCollector.collectClassMetrics(parse, packageName, classMethodCounts, classAttributeCounts, 
-                    classMethodLineCounts, maxParameterMethods, maxParameterCount, methodCallGraph);
+        Map<String, List<String>> removed = new LinkedHashMap<>();
+        Map<String, List<String>> added = new LinkedHashMap<>();
+        if (tier == AnalysisTier.SYNTACTIC_CALLS) {
+            // the new declarations can change how calls in other files resolve
+            new CallNameIndex(fileAnalyses.values()).resolve(fileAnalyses.values(), names, (file, row, previousCallees) -> {
+                int method = file.methods[row];
+                if (methods.get(method) || methodOwners[method] != file) return;
+                removed.put(names.methodName(method), methodNames(previousCallees, 0, previousCallees.length));
+                added.put(names.methodName(method), callees(file, row));
+            });
+        }
+        Map<String, List<String>> after = entries(methods);
+        for (Map.Entry<String, List<String>> entry : before.entrySet()) {
+            if (!entry.getValue().equals(after.get(entry.getKey()))) removed.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, List<String>> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) added.put(entry.getKey(), entry.getValue());
+        }
+
+        // these are cheap to rebuild from the stored per-file facts
+        packages.clear();
+        maxParameterCount[0] = 0;
+        maxParameterMethods.clear();
+        for (FileAnalysis fileAnalysis : fileAnalyses.values()) {
+            packages.add(fileAnalysis.packageName);
+            mergeMaxParameters(fileAnalysis);
+        }
+        callGraph = null;
+        return new CallGraphDelta(sourceFilePath, removed, added);
+    }
+
+    // Sets the entries of the given classes and methods again from every file in merge order, so the last
+    // file declaring a name wins as in a full parse even when a later one was deleted or no longer declares it
+    private void mergeKeys(Set<String> classes, BitSet methods) {
+        classMethodCounts.keySet().removeAll(classes);
+        classAttributeCounts.keySet().removeAll(classes);
+        classMethodLineCounts.keySet().removeAll(classes);
+        for (int method = methods.nextSetBit(0); method >= 0; method = methods.nextSetBit(method + 1)) {
+            methodOwners[method] = null;
+        }
+        for (FileAnalysis analysis : fileAnalyses.values()) {
+            for (String className : analysis.classMethodCounts.keySet()) {
+                if (!classes.contains(className)) continue;
+                classMethodCounts.put(className, analysis.classMethodCounts.get(className));
+                classAttributeCounts.put(className, analysis.classAttributeCounts.get(className));
+                classMethodLineCounts.put(className, analysis.classMethodLineCounts.get(className));
+            }
+            for (int method : analysis.methods) {
+                if (methods.get(method)) methodOwners[method] = analysis;
+            }
+        }
+    }
+
+    // The callees of the given methods as the call graph holds them, by method name
+    private Map<String, List<String>> entries(BitSet methods) {
+        Map<String, List<String>> entries = new LinkedHashMap<>();
+        for (int method = methods.nextSetBit(0); method >= 0; method = methods.nextSetBit(method + 1)) {
+            FileAnalysis owner = methodOwners[method];
+            if (owner == null) continue;
+            int row = 0;
+            while (owner.methods[row] != method) row++;
+            entries.put(names.methodName(method), callees(owner, row));
+        }
+        return entries;
+    }
+
+    private List<String> callees(FileAnalysis analysis, int row) {
+        return methodNames(analysis.callees, analysis.callStart[row], analysis.callStart[row + 1]);
+    }
 
-            methodInfo.append(ASTPrinter.printMethodInfo(parse));
-            variableInfo.append(ASTPrinter.printVariableInfo(parse));
-            invocationInfo.append(ASTPrinter.printMethodInvocationInfo(parse));
+    private List<String> methodNames(int[] ids, int from, int to) {
+        List<String> methodNames = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            methodNames.add(names.methodName(ids[i]));
         }
-        staticMethodCallGraph = new HashMap<>(methodCallGraph);
+        return methodNames;
     }
 
+    // Folds one file into the project totals; later files overwrite earlier ones exactly as a sequential run does
+    private void merge(FileAnalysis analysis) {
+        fileAnalyses.put(analysis.filePath, analysis);
+        totalLines += analysis.lineCount;
+        packages.add(analysis.packageName);
+        totalClasses += analysis.classCount;
+        totalMethods += analysis.methodCount;
+        totalAttributes += analysis.attributeCount;
+
+        classMethodCounts.putAll(analysis.classMethodCounts);
+        classAttributeCounts.putAll(analysis.classAttributeCounts);
+        classMethodLineCounts.putAll(analysis.classMethodLineCounts);
+        mergeMaxParameters(analysis);
+        compact(analysis);
+        for (int method : analysis.methods) {
+            methodOwners[method] = analysis;
+        }
+    }
+
+    // Replaces the call lists of a file by ids of names, so each method name is stored once for the whole
+    // project, and drops the lists
+    private void compact(FileAnalysis analysis) {
+        int count = analysis.methodCallGraph.size(), calls = 0;
+        for (List<String> callees : analysis.methodCallGraph.values()) {
+            calls += callees.size();
+        }
+        analysis.methods = new int[count];
+        analysis.callStart = new int[count + 1];
+        analysis.callees = new int[calls];
+        analysis.receivers = analysis.tier == AnalysisTier.SYNTACTIC_CALLS ? new String[calls] : null;
+        int row = 0, call = 0;
+        for (Map.Entry<String, List<String>> entry : analysis.methodCallGraph.entrySet()) {
+            analysis.methods[row] = names.methodId(entry.getKey());
+            analysis.callStart[row++] = call;
+            List<String> receivers = analysis.receivers != null ? analysis.callReceivers.get(entry.getKey()) : null;
+            for (int i = 0; i < entry.getValue().size(); i++, call++) {
+                analysis.callees[call] = names.methodId(entry.getValue().get(i));
+                // the same few receivers ("this", field names) come back at most call sites
+                if (receivers != null && receivers.get(i) != null) analysis.receivers[call] = receivers.get(i).intern();
+            }
+        }
+        analysis.callStart[count] = call;
+        analysis.methodCallGraph = null;
+        analysis.callReceivers = null;
+        if (names.methodCount() > methodOwners.length) {
+            methodOwners = Arrays.copyOf(methodOwners, Math.max(names.methodCount(), methodOwners.length * 2));
+        }
+    }
+
+    // The call graph built last reads names; keeps its table as it is by going on with a copy, same ids
+    private void unshareNames() {
+        if (callGraph == null) return;
+        SymbolTable copy = new SymbolTable();
+        for (int method = 0; method < names.methodCount(); method++) {
+            copy.methodId(names.methodName(method));
+        }
+        names = copy;
+    }
+
+    private void mergeMaxParameters(FileAnalysis analysis) {
+        if (analysis.maxParameterCount[0] > maxParameterCount[0]) {
+            maxParameterCount[0] = analysis.maxParameterCount[0];
+            maxParameterMethods.clear();
+            maxParameterMethods.addAll(analysis.maxParameterMethods);
+        } else if (analysis.maxParameterCount[0] == maxParameterCount[0]) {
+            maxParameterMethods.addAll(analysis.maxParameterMethods);
+        }
+    }
+
+    public String getProjectSourcePath() { return projectSourcePath; }
+    public AnalysisTier getAnalysisTier() { return tier; }
     public int getTotalClasses() { return totalClasses; }
     public int getTotalLines() { return totalLines; }
     public int getTotalMethods() { return totalMethods; }
@@ -72,12 +469,62 @@ public class ParserLogic {
     public Map<String, List<MetricsCollector.MethodInfo>> getClassMethodLineCounts() { return classMethodLineCounts; }
     public int getMaxParameterCount() { return maxParameterCount[0]; }
     public List<MetricsCollector.MethodInfo> getMaxParameterMethods() { return maxParameterMethods; }
-    public Map<String, List<String>> getMethodCallGraph() { return methodCallGraph; }
-    public String getMethodInfo() { return methodInfo.toString(); }
-    public String getVariableInfo() { return variableInfo.toString(); }
-    public String getInvocationInfo() { return invocationInfo.toString(); }
 
-    public static Map<String, List<String>> getMethodCallGraphStatic() {
-        return staticMethodCallGraph;
+    // Immutable CSR snapshot of the call graph, the project's only copy of it, for the call graph view and
+    // the coupling and export passes; built on first use after each change. Ids follow file order, so they
+    // are stable from one run to the next, and only names still in use are interned. The graph's table
+    // becomes the files' names too rather than a second copy of them.
+    public CallGraph getCallGraph() {
+        if (callGraph == null) {
+            SymbolTable table = new SymbolTable();
+            CallGraph.Builder builder = new CallGraph.Builder(table);
+            int[] ids = new int[names.methodCount()];
+            Arrays.fill(ids, -1);
+            for (FileAnalysis analysis : fileAnalyses.values()) {
+                for (int row = 0; row < analysis.methods.length; row++) {
+                    // skip entries a later file overwrote
+                    if (methodOwners[analysis.methods[row]] != analysis) continue;
+                    int caller = builder.addCaller(names.methodName(analysis.methods[row]));
+                    ids[analysis.methods[row]] = caller;
+                    for (int call = analysis.callStart[row]; call < analysis.callStart[row + 1]; call++) {
+                        int callee = analysis.callees[call];
+                        if (ids[callee] < 0) ids[callee] = builder.addMethod(names.methodName(callee));
+                        builder.addCall(caller, ids[callee]);
+                    }
+                }
+            }
+            // entries a later file overwrote come back if it drops them, so their names move over too,
+            // after those of the graph
+            FileAnalysis[] owners = new FileAnalysis[methodOwners.length];
+            for (FileAnalysis analysis : fileAnalyses.values()) {
+                for (int[] column : new int[][] { analysis.methods, analysis.callees }) {
+                    for (int i = 0; i < column.length; i++) {
+                        int method = column[i];
+                        if (ids[method] < 0) ids[method] = table.methodId(names.methodName(method));
+                        column[i] = ids[method];
+                    }
+                }
+            }
+            for (int method = 0; method < ids.length; method++) {
+                if (methodOwners[method] != null) owners[ids[method]] = methodOwners[method];
+            }
+            methodOwners = owners;
+            names = table;
+            callGraph = builder.build();
+        }
+        return callGraph;
+    }
+
+    // The logs are kept once, with each file's facts, and joined in merge order when asked for
+    public String getMethodInfo() { return joinLogs(analysis -> analysis.methodInfo); }
+    public String getVariableInfo() { return joinLogs(analysis -> analysis.variableInfo); }
+    public String getInvocationInfo() { return joinLogs(analysis -> analysis.invocationInfo); }
+
+    private String joinLogs(Function<FileAnalysis, String> log) {
+        StringBuilder joined = new StringBuilder();
+        for (FileAnalysis analysis : fileAnalyses.values()) {
+            joined.append(log.apply(analysis));
+        }
+        return joined.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package Parser;
+
+// Receives the progress of a long analysis. May be called from worker threads; total is 0 when the
+// amount of work in the phase is unknown.
+@FunctionalInterface
+public interface ProgressListener {
+    ProgressListener NONE = (phase, done, total) -> {};
+
+    void onProgress(String phase, int done, int total);
+}
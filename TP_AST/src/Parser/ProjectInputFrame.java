@@ -4,15 +4,15 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.IOException;
 
 public class ProjectInputFrame extends JFrame {
     private JTextField pathField;
+    private JComboBox<AnalysisTier> tierCombo;
     private JButton parseButton;
 
     public ProjectInputFrame() {
         setTitle("Project Path Input");
-        setSize(400, 150);
+        setSize(400, 180);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
 
@@ -24,9 +24,12 @@ public class ProjectInputFrame extends JFrame {
         panel.add(label, BorderLayout.NORTH);
         panel.add(pathField, BorderLayout.CENTER);
 
+        tierCombo = new JComboBox<>(AnalysisTier.values());
+        tierCombo.setSelectedItem(AnalysisTier.FULL_BINDINGS);
         parseButton = new JButton("Parse Project");
         parseButton.addActionListener(new ParseActionListener());
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(tierCombo);
         buttonPanel.add(parseButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
@@ -46,14 +49,23 @@ public class ProjectInputFrame extends JFrame {
                 JOptionPane.showMessageDialog(ProjectInputFrame.this, "Please enter a valid path.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-            try {
-                ParserLogic parserLogic = new ParserLogic(path, ParserConfig.JRE_PATH);
-                parserLogic.parseProject();
-                dispose();
-                new MetricsDashboardFrame(parserLogic);
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(ProjectInputFrame.this, "Error parsing project: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            ParserLogic parserLogic = new ParserLogic(path, ParserConfig.JRE_PATH, ParserConfig.THREAD_COUNT,
+                    (AnalysisTier) tierCombo.getSelectedItem());
+            parserLogic.setCacheDirectory(ParserConfig.CACHE_DIRECTORY);
+
+            // parse on a worker thread; the dashboard opens on the EDT once the results are in
+            parseButton.setEnabled(false);
+            BackgroundAnalysis.start(ProjectInputFrame.this, "Parsing project",
+                    progress -> {
+                        parserLogic.setProgressListener(progress);
+                        parserLogic.parseProject();
+                        return parserLogic;
+                    },
+                    result -> {
+                        dispose();
+                        new MetricsDashboardFrame(result);
+                    },
+                    () -> parseButton.setEnabled(true));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package Parser;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+// Uniform grid over line segments, for the viewport queries of a tile, the way NodeGrid is over node
+// rectangles. A segment is entered in each cell its line crosses, found column by column, and the cells are
+// laid out as CSR; a rectangle query reads the cells it covers and reports each segment from the first
+// of them it crosses. Cells are at least as wide as the average segment is long, so a long segment is in a
+// few cells rather than in every cell of its bounding box. Never modified after it is built.
+final class SegmentGrid {
+    private final int originX, originY;
+    private final int cellSize;
+    private final int columns, rows;
+    private final int[] cellStart;
+    private final int[] cellSegments;
+    private final int[] x1, y1, x2, y2;
+
+    SegmentGrid(int[] x1, int[] y1, int[] x2, int[] y2, int count) {
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        double length = 0;
+        for (int s = 0; s < count; s++) {
+            minX = Math.min(minX, Math.min(x1[s], x2[s]));
+            minY = Math.min(minY, Math.min(y1[s], y2[s]));
+            maxX = Math.max(maxX, Math.max(x1[s], x2[s]));
+            maxY = Math.max(maxY, Math.max(y1[s], y2[s]));
+            length += Math.abs((double) x2[s] - x1[s]) + Math.abs((double) y2[s] - y1[s]);
+        }
+        if (count == 0) minX = minY = maxX = maxY = 0;
+        originX = minX;
+        originY = minY;
+        double area = (double) (maxX - minX + 1) * (maxY - minY + 1);
+        cellSize = (int) Math.max(16, Math.ceil(Math.max(Math.sqrt(area / Math.max(1, count)), length / Math.max(1, count))));
+        columns = (maxX - minX) / cellSize + 1;
+        rows = (maxY - minY) / cellSize + 1;
+
+        // count, prefix sum, then fill
+        cellStart = new int[columns * rows + 1];
+        for (int s = 0; s < count; s++) {
+            for (int c = firstColumn(s); c <= lastColumn(s); c++) {
+                for (int r = firstRow(s, c); r <= lastRow(s, c); r++) cellStart[r * columns + c + 1]++;
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) cellStart[cell + 1] += cellStart[cell];
+        cellSegments = new int[cellStart[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int s = 0; s < count; s++) {
+            for (int c = firstColumn(s); c <= lastColumn(s); c++) {
+                for (int r = firstRow(s, c); r <= lastRow(s, c); r++) {
+                    int cell = r * columns + c;
+                    cellSegments[cellStart[cell] + fill[cell]++] = s;
+                }
+            }
+        }
+    }
+
+    // Writes the segments crossing a cell that area overlaps to out, in index order, and returns their
+    // count; the caller tests them against area itself
+    int segmentsIn(Rectangle area, int[] out) {
+        int count = 0;
+        int fromColumn = column(area.x), toColumn = column(area.x + area.width);
+        int fromRow = row(area.y), toRow = row(area.y + area.height);
+        for (int r = fromRow; r <= toRow; r++) {
+            for (int c = fromColumn; c <= toColumn; c++) {
+                int cell = r * columns + c;
+                for (int e = cellStart[cell]; e < cellStart[cell + 1]; e++) {
+                    int s = cellSegments[e];
+                    // the columns a segment crosses within the rows are contiguous, so it is reported from
+                    // the first of them, at its first row there
+                    if (c > Math.max(fromColumn, firstColumn(s))
+                            && firstRow(s, c - 1) <= toRow && lastRow(s, c - 1) >= fromRow) continue;
+                    if (r != Math.max(fromRow, firstRow(s, c))) continue;
+                    out[count++] = s;
+                }
+            }
+        }
+        Arrays.sort(out, 0, count);
+        return count;
+    }
+
+    private int firstColumn(int s) {
+        return column(Math.min(x1[s], x2[s]));
+    }
+
+    private int lastColumn(int s) {
+        return column(Math.max(x1[s], x2[s]));
+    }
+
+    // The rows the line of segment s crosses within column c, boundaries included; a vertical segment
+    // crosses all of its rows in its one column
+    private int firstRow(int s, int c) {
+        if (x1[s] == x2[s]) return row(Math.min(y1[s], y2[s]));
+        return row((int) Math.floor(Math.min(yAt(s, columnLeft(s, c)), yAt(s, columnRight(s, c)))));
+    }
+
+    private int lastRow(int s, int c) {
+        if (x1[s] == x2[s]) return row(Math.max(y1[s], y2[s]));
+        return row((int) Math.ceil(Math.max(yAt(s, columnLeft(s, c)), yAt(s, columnRight(s, c)))));
+    }
+
+    private int columnLeft(int s, int c) {
+        return Math.max(Math.min(x1[s], x2[s]), originX + c * cellSize);
+    }
+
+    private int columnRight(int s, int c) {
+        return Math.min(Math.max(x1[s], x2[s]), originX + (c + 1) * cellSize);
+    }
+
+    private double yAt(int s, int px) {
+        return y1[s] + (double) (px - x1[s]) * (y2[s] - y1[s]) / (x2[s] - x1[s]);
+    }
+
+    private int column(int px) {
+        return Math.max(0, Math.min(columns - 1, (px - originX) / cellSize));
+    }
+
+    private int row(int py) {
+        return Math.max(0, Math.min(rows - 1, (py - originY) / cellSize));
+    }
+}
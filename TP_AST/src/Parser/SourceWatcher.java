@@ -0,0 +1,163 @@
+package Parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+// Watches a source root and re-analyzes only the .java files that were saved, created or deleted.
+// Parsing happens on the watcher thread; the patch is applied to ParserLogic on the EDT, then the listener runs.
+// When events were lost (OVERFLOW, e.g. a checkout touching many files), the tree is rescanned and the files
+// whose modification time changed, appeared or disappeared since they were last seen are re-analyzed.
+public class SourceWatcher implements Closeable {
+    private static final long QUIET_PERIOD_MS = 300;
+
+    private final ParserLogic parserLogic;
+    private final Consumer<ParserLogic.CallGraphDelta> listener;
+    private final WatchService watchService;
+    private final Path root;
+    // last seen modification time of each .java file under the root; only the watcher thread uses it
+    // once started
+    private final Map<Path, FileTime> modified = new HashMap<>();
+    private final Thread thread;
+
+    public SourceWatcher(ParserLogic parserLogic, Consumer<ParserLogic.CallGraphDelta> listener) throws IOException {
+        this.parserLogic = parserLogic;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.root = Paths.get(parserLogic.getProjectSourcePath()).toAbsolutePath();
+        scanTree(root, new LinkedHashSet<>(), null);
+        this.thread = new Thread(this::run, "source-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+
+    // Registers the directories under top (again, which is harmless) and adds the .java files not seen
+    // with their current modification time to changed; each file found is removed from unseen
+    private void scanTree(Path top, Set<Path> changed, Set<Path> unseen) throws IOException {
+        Files.walkFileTree(top, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!file.toString().endsWith(".java")) return FileVisitResult.CONTINUE;
+                if (unseen != null) unseen.remove(file);
+                if (!attrs.lastModifiedTime().equals(modified.put(file, attrs.lastModifiedTime()))) changed.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // After lost events: every file changed since it was last seen, including the deleted ones
+    private void rescan(Set<Path> changed) {
+        Set<Path> unseen = new HashSet<>(modified.keySet());
+        try {
+            scanTree(root, changed, unseen);
+        } catch (IOException e) {
+            System.err.println("Cannot rescan " + root + ": " + e.getMessage());
+            return;
+        }
+        for (Path path : unseen) {
+            modified.remove(path);
+            changed.add(path);
+        }
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                // editors often write a file in several steps: wait for a quiet period, then analyze once
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                boolean overflowed = false;
+                while (key != null) {
+                    overflowed |= collect(key, changed);
+                    key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS);
+                }
+                if (overflowed) rescan(changed);
+                for (Path path : changed) {
+                    remember(path);
+                    reanalyze(path);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher stopped
+        }
+    }
+
+    // Adds the files the key's events name to changed; returns whether events were lost
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        Path dir = (Path) key.watchable();
+        boolean overflowed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed = true;
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    scanTree(path, changed, null);
+                } catch (IOException e) {
+                    System.err.println("Cannot watch " + path + ": " + e.getMessage());
+                }
+            } else if (path.toString().endsWith(".java")) {
+                changed.add(path);
+            }
+        }
+        key.reset();
+        return overflowed;
+    }
+
+    // so a later rescan only picks the file up again once it changes
+    private void remember(Path path) {
+        try {
+            modified.put(path, Files.getLastModifiedTime(path));
+        } catch (IOException e) {
+            modified.remove(path);
+        }
+    }
+
+    private void reanalyze(Path path) {
+        String sourceFilePath = path.toString();
+        try {
+            FileAnalysis analysis = parserLogic.analyzeFile(sourceFilePath);
+            SwingUtilities.invokeLater(() -> listener.accept(parserLogic.applyFileAnalysis(sourceFilePath, analysis)));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Re-analysis of " + sourceFilePath + " failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package Parser;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Pre-rendered square tiles of a scene, per zoom, drawn by a shared pool of background threads. paint
+// blits the cached tiles covering the view and queues the missing ones; until a tile arrives, the tiles of
+// the last zoom that was drawn whole are scaled in its place. Tiles belong to the scene they were drawn
+// from, so setting a new scene drops any tile still being drawn for the old one; the old tiles at the
+// current zoom are still shown, each until its replacement arrives, so a scene that changes a little at a
+// time, like a layout streaming in, does not flicker. Only the owner's event thread calls into the cache;
+// scenes are painted on the pool and must not change.
+public class TileCache {
+    public static final int TILE_SIZE = 256;
+    private static final int MAX_TILES = 192;
+    // scaled stand-ins are skipped when the last whole zoom is too far off to be worth it
+    private static final double MAX_FALLBACK_RATIO = 4;
+
+    private static final ExecutorService RENDERER = Executors.newFixedThreadPool(
+            Math.max(1, ParserConfig.THREAD_COUNT - 1), task -> {
+                Thread thread = new Thread(task, "tile-renderer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public interface Scene {
+        // Draws the part of the scene inside world on g, which maps world coordinates to the tile at zoom
+        void paint(Graphics2D g, Rectangle2D world, double zoom);
+    }
+
+    private record Key(double zoom, int column, int row) {}
+
+    private final JComponent owner;
+    private final Map<Key, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+    // tiles of earlier scenes at the current zoom, shown where the scene has none yet
+    private final Map<Key, BufferedImage> stale = new HashMap<>();
+    private final Set<Key> pending = new HashSet<>();
+    private volatile Scene scene;
+    // tiles of another zoom are not worth drawing once the view has moved on
+    private volatile double wantedZoom = Double.NaN;
+    private double wholeZoom = Double.NaN;
+
+    public TileCache(JComponent owner) {
+        this.owner = owner;
+    }
+
+    public void setScene(Scene scene) {
+        this.scene = scene;
+        stale.putAll(tiles);
+        stale.keySet().removeIf(key -> key.zoom() != wantedZoom);
+        tiles.clear();
+        pending.clear();
+        wholeZoom = Double.NaN;
+        owner.repaint();
+    }
+
+    // Draws the view, a rectangle of the owner, where world point p shows at p * zoom + (transX, transY)
+    public void paint(Graphics2D g, double zoom, int transX, int transY, Rectangle view) {
+        if (scene == null) return;
+        wantedZoom = zoom;
+        int firstColumn = Math.floorDiv(view.x - transX, TILE_SIZE);
+        int lastColumn = Math.floorDiv(view.x + view.width - 1 - transX, TILE_SIZE);
+        int firstRow = Math.floorDiv(view.y - transY, TILE_SIZE);
+        int lastRow = Math.floorDiv(view.y + view.height - 1 - transY, TILE_SIZE);
+        boolean whole = true;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Key key = new Key(zoom, column, row);
+                BufferedImage tile = tiles.get(key);
+                int x = transX + column * TILE_SIZE, y = transY + row * TILE_SIZE;
+                if (tile != null) {
+                    g.drawImage(tile, x, y, null);
+                    continue;
+                }
+                whole = false;
+                BufferedImage old = stale.get(key);
+                if (old != null) {
+                    g.drawImage(old, x, y, null);
+                } else {
+                    paintStandIn(g, zoom, transX, transY, x, y);
+                }
+                request(key);
+            }
+        }
+        if (whole) {
+            wholeZoom = zoom;
+            stale.clear();
+        }
+    }
+
+    // The cached tiles of the last whole zoom that cover the missing tile at (x, y), scaled and clipped to it
+    private void paintStandIn(Graphics2D g, double zoom, int transX, int transY, int x, int y) {
+        double ratio = wholeZoom / zoom;
+        if (Double.isNaN(ratio) || ratio == 1 || ratio > MAX_FALLBACK_RATIO || ratio < 1 / MAX_FALLBACK_RATIO) return;
+        // the missing tile in the scaled space of the whole zoom
+        double left = (x - transX) * ratio, top = (y - transY) * ratio, size = TILE_SIZE * ratio;
+        double scaledSize = TILE_SIZE / ratio;
+        Graphics2D clipped = (Graphics2D) g.create();
+        clipped.clipRect(x, y, TILE_SIZE, TILE_SIZE);
+        for (int row = (int) Math.floor(top / TILE_SIZE); row * TILE_SIZE < top + size; row++) {
+            for (int column = (int) Math.floor(left / TILE_SIZE); column * TILE_SIZE < left + size; column++) {
+                BufferedImage tile = tiles.get(new Key(wholeZoom, column, row));
+                if (tile == null) continue;
+                int tileX = transX + (int) Math.floor(column * scaledSize);
+                int tileY = transY + (int) Math.floor(row * scaledSize);
+                int tileSize = (int) Math.ceil(scaledSize) + 1;
+                clipped.drawImage(tile, tileX, tileY, tileSize, tileSize, null);
+            }
+        }
+        clipped.dispose();
+    }
+
+    private void request(Key key) {
+        if (!pending.add(key)) return;
+        Scene queuedFor = scene;
+        RENDERER.execute(() -> {
+            if (queuedFor != scene || key.zoom() != wantedZoom) {
+                SwingUtilities.invokeLater(() -> {
+                    if (queuedFor == scene) pending.remove(key);
+                });
+                return;
+            }
+            BufferedImage tile = render(queuedFor, key);
+            SwingUtilities.invokeLater(() -> {
+                if (queuedFor != scene) return;
+                pending.remove(key);
+                tiles.put(key, tile);
+                stale.remove(key);
+                owner.repaint();
+            });
+        });
+    }
+
+    private static BufferedImage render(Scene scene, Key key) {
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = tile.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        double zoom = key.zoom();
+        g.translate(-key.column() * TILE_SIZE, -key.row() * TILE_SIZE);
+        g.scale(zoom, zoom);
+        Rectangle2D world = new Rectangle2D.Double(key.column() * TILE_SIZE / zoom, key.row() * TILE_SIZE / zoom,
+                TILE_SIZE / zoom, TILE_SIZE / zoom);
+        g.clip(world);
+        scene.paint(g, world, zoom);
+        g.dispose();
+        return tile;
+    }
+}
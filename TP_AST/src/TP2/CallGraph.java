@@ -0,0 +1,156 @@
+package TP2;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+// Immutable method call graph in compressed sparse row form over SymbolTable method ids.
+// The callees of method m are callees[rowStart(m) .. rowEnd(m)), sorted by id, each listed once
+// with the number of times m calls it in multiplicities. Methods added as callers are declared: their
+// row is known, even when it is empty, while a method that is only called has no row of its own.
+public class CallGraph {
+    private final SymbolTable symbols;
+    private final int[] offsets;
+    private final int[] callees;
+    private final int[] multiplicities;
+    private final BitSet declared;
+
+    private CallGraph(SymbolTable symbols, int[] offsets, int[] callees, int[] multiplicities, BitSet declared) {
+        this.symbols = symbols;
+        this.offsets = offsets;
+        this.callees = callees;
+        this.multiplicities = multiplicities;
+        this.declared = declared;
+    }
+
+    // Every key becomes a declared method even when it calls nothing; duplicate callees become multiplicities
+    public static CallGraph fromMethodCallGraph(Map<String, List<String>> methodCallGraph) {
+        Builder builder = new Builder(new SymbolTable());
+        for (Map.Entry<String, List<String>> entry : methodCallGraph.entrySet()) {
+            int caller = builder.addCaller(entry.getKey());
+            for (String callee : entry.getValue()) {
+                builder.addCall(caller, builder.addMethod(callee));
+            }
+        }
+        return builder.build();
+    }
+
+    public SymbolTable symbols() { return symbols; }
+    public int methodCount() { return offsets.length - 1; }
+    public int edgeCount() { return callees.length; }
+    public int rowStart(int method) { return offsets[method]; }
+    public int rowEnd(int method) { return offsets[method + 1]; }
+    public int callee(int edge) { return callees[edge]; }
+    public int multiplicity(int edge) { return multiplicities[edge]; }
+    public boolean isDeclared(int method) { return declared.get(method); }
+
+    // The calls seen from the classes of the caller and the callee, in shards of consecutive methods
+    // holding about the same number of edges
+    public ClassEdgeStream classEdges(int shardCount) {
+        int shards = Math.max(1, Math.min(shardCount, methodCount()));
+        int[] shardStart = new int[shards + 1];
+        for (int s = 1, m = 0; s < shards; s++) {
+            long target = (long) edgeCount() * s / shards;
+            while (m < methodCount() && offsets[m] < target) m++;
+            shardStart[s] = m;
+        }
+        shardStart[shards] = methodCount();
+
+        return new ClassEdgeStream() {
+            @Override
+            public SymbolTable symbols() { return symbols; }
+
+            @Override
+            public int shardCount() { return shards; }
+
+            @Override
+            public void forEachEdge(int shard, EdgeConsumer consumer) {
+                for (int m = shardStart[shard]; m < shardStart[shard + 1]; m++) {
+                    int callerClass = symbols.classOfMethod(m);
+                    for (int e = offsets[m]; e < offsets[m + 1]; e++) {
+                        consumer.accept(callerClass, symbols.classOfMethod(callees[e]), multiplicities[e]);
+                    }
+                }
+            }
+        };
+    }
+
+    // Total number of call sites, counting multiplicities
+    public long callCount() {
+        long total = 0;
+        for (int multiplicity : multiplicities) total += multiplicity;
+        return total;
+    }
+
+    public static class Builder {
+        private final SymbolTable symbols;
+        private int[] callers = new int[1024];
+        private int[] targets = new int[1024];
+        private int size = 0;
+        private final BitSet declared = new BitSet();
+
+        public Builder(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        public int addMethod(String methodName) {
+            return symbols.methodId(methodName);
+        }
+
+        // A method whose calls are being added, declared even if it makes none
+        public int addCaller(String methodName) {
+            int method = addMethod(methodName);
+            declared.set(method);
+            return method;
+        }
+
+        public void addCall(int caller, int callee) {
+            if (size == callers.length) {
+                callers = Arrays.copyOf(callers, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            callers[size] = caller;
+            targets[size] = callee;
+            size++;
+        }
+
+        public void addCall(String caller, String callee) {
+            addCall(addMethod(caller), addMethod(callee));
+        }
+
+        public CallGraph build() {
+            int methodCount = symbols.methodCount();
+
+            // counting sort of the call sites by caller
+            int[] rowStart = new int[methodCount + 1];
+            for (int i = 0; i < size; i++) rowStart[callers[i] + 1]++;
+            for (int m = 0; m < methodCount; m++) rowStart[m + 1] += rowStart[m];
+            int[] sorted = new int[size];
+            int[] next = Arrays.copyOf(rowStart, methodCount);
+            for (int i = 0; i < size; i++) sorted[next[callers[i]]++] = targets[i];
+
+            // sort each row and fold repeated callees into one edge with a multiplicity
+            int[] offsets = new int[methodCount + 1];
+            int[] callees = new int[size];
+            int[] multiplicities = new int[size];
+            int edges = 0;
+            for (int m = 0; m < methodCount; m++) {
+                offsets[m] = edges;
+                Arrays.sort(sorted, rowStart[m], rowStart[m + 1]);
+                for (int i = rowStart[m]; i < rowStart[m + 1]; i++) {
+                    if (edges > offsets[m] && callees[edges - 1] == sorted[i]) {
+                        multiplicities[edges - 1]++;
+                    } else {
+                        callees[edges] = sorted[i];
+                        multiplicities[edges] = 1;
+                        edges++;
+                    }
+                }
+            }
+            offsets[methodCount] = edges;
+            return new CallGraph(symbols, offsets, Arrays.copyOf(callees, edges), Arrays.copyOf(multiplicities, edges),
+                    (BitSet) declared.clone());
+        }
+    }
+}
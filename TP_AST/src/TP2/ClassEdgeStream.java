@@ -0,0 +1,17 @@
+package TP2;
+
+// Class-to-class call edges over the class ids of a SymbolTable, split into shards that can be read
+// concurrently. The same edge may come several times; its multiplicities add up.
+public interface ClassEdgeStream {
+
+    @FunctionalInterface
+    interface EdgeConsumer {
+        void accept(int callerClass, int calleeClass, int multiplicity);
+    }
+
+    SymbolTable symbols();
+
+    int shardCount();
+
+    void forEachEdge(int shard, EdgeConsumer consumer);
+}
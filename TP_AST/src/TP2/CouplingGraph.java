@@ -1,7 +1,17 @@
 // src/TP2/CouplingGraph.java
 package TP2;
 
+import Parser.Cancellation;
+import Parser.ParserConfig;
+
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class CouplingGraph {
@@ -20,50 +30,202 @@ public class CouplingGraph {
         return calls;
     }
 
-    // Build coupling matrix from method calls
-    public static Map<String, Map<String, Double>> buildCouplingMatrix(List<Call> calls) {
-        Set<String> classes = new HashSet<>();
-        Map<String, Map<String, Integer>> count = new HashMap<>();
+    private static final int CHUNKS_PER_THREAD = 4;
+    // below this many call edges the threads cost more than they save
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    public static CouplingMatrix buildCouplingMatrix(CallGraph graph) {
+        return buildCouplingMatrix(graph, className -> true);
+    }
+
+    public static CouplingMatrix buildCouplingMatrix(CallGraph graph, Predicate<String> includeClass) {
+        int threads = graph.edgeCount() < PARALLEL_THRESHOLD ? 1 : ParserConfig.THREAD_COUNT;
+        return buildCouplingMatrix(graph.classEdges(threads * CHUNKS_PER_THREAD), includeClass, threads);
+    }
+
+    // Class coupling from a sharded edge stream, in time linear in the number of edges. Each shard is
+    // counted into its own buckets, one per row partition; each partition then sums its entries and the
+    // rows are laid out as CSR. Link counts and the call total are exact integer sums, so the matrix is
+    // the same for any number of threads or shards. Calls to unresolved methods, calls within a class
+    // and calls touching a class rejected by includeClass are left out.
+    public static CouplingMatrix buildCouplingMatrix(ClassEdgeStream edges, Predicate<String> includeClass, int threadCount) {
+        SymbolTable symbols = edges.symbols();
+        int classCount = symbols.classCount();
+        boolean[] included = new boolean[classCount];
+        for (int c = 0; c < classCount; c++) {
+            included[c] = !symbols.isUnresolved(c) && includeClass.test(symbols.className(c));
+        }
+        int shards = edges.shardCount();
+        int partitions = Math.max(1, threadCount);
 
-        for (Call call : calls) {
-            String c1 = call.caller().substring(0, call.caller().lastIndexOf('.'));
-            String c2 = call.callee().substring(0, call.callee().lastIndexOf('.'));
-            if (c1.equals(c2)) continue;
+        // every inter-class call is entered in the rows of both classes, in the bucket of the row's partition
+        EntryList[][] buckets = new EntryList[shards][];
+        BitSet[] shardCoupled = new BitSet[shards];
+        long[] shardCalls = new long[shards];
+        runParallel(shards, threadCount, s -> {
+            EntryList[] local = new EntryList[partitions];
+            for (int q = 0; q < partitions; q++) local[q] = new EntryList();
+            BitSet coupled = new BitSet(classCount);
+            long[] calls = new long[1];
+            edges.forEachEdge(s, (c1, c2, multiplicity) -> {
+                if (c1 == c2 || !included[c1] || !included[c2]) return;
+                local[c1 % partitions].add(c1, c2, multiplicity);
+                local[c2 % partitions].add(c2, c1, multiplicity);
+                coupled.set(c1);
+                coupled.set(c2);
+                calls[0] += multiplicity;
+            });
+            buckets[s] = local;
+            shardCoupled[s] = coupled;
+            shardCalls[s] = calls[0];
+        });
 
-            classes.add(c1);
-            classes.add(c2);
-            count.computeIfAbsent(c1, k -> new HashMap<>()).merge(c2, 1, Integer::sum);
+        // renumber the coupled classes in name order
+        BitSet coupled = new BitSet(classCount);
+        long totalCalls = 0;
+        for (int s = 0; s < shards; s++) {
+            coupled.or(shardCoupled[s]);
+            totalCalls += shardCalls[s];
+        }
+        int size = coupled.cardinality();
+        Integer[] order = new Integer[size];
+        for (int c = coupled.nextSetBit(0), i = 0; c >= 0; c = coupled.nextSetBit(c + 1)) order[i++] = c;
+        Arrays.sort(order, Comparator.comparing(symbols::className));
+        String[] classes = new String[size];
+        int[] index = new int[classCount];
+        for (int i = 0; i < size; i++) {
+            classes[i] = symbols.className(order[i]);
+            index[order[i]] = i;
         }
 
-        Map<String, Map<String, Double>> matrix = new HashMap<>();
-        for (String c1 : classes) {
-            Map<String, Double> row = new HashMap<>();
-            int out = count.getOrDefault(c1, Map.of()).values().stream().mapToInt(Integer::intValue).sum();
-            for (String c2 : classes) {
-                if (c1.equals(c2)) continue;
-                int in = count.getOrDefault(c2, Map.of()).getOrDefault(c1, 0);
-                int links = count.getOrDefault(c1, Map.of()).getOrDefault(c2, 0) + in;
-                row.put(c2, links > 0 ? (double) links / (out + in + 1) : 0.0);
+        // a counting sort by column then a stable one by row leaves each row sorted, so repeated pairs
+        // end up adjacent and are summed in one pass; the partitions own disjoint rows
+        EntryList[] summed = new EntryList[partitions];
+        int[] rowLength = new int[size];
+        runParallel(partitions, threadCount, q -> {
+            int count = 0;
+            for (int s = 0; s < shards; s++) count += buckets[s][q].size;
+            int[] rows = new int[count];
+            int[] cols = new int[count];
+            int[] ws = new int[count];
+            int k = 0;
+            for (int s = 0; s < shards; s++) {
+                EntryList bucket = buckets[s][q];
+                for (int i = 0; i < bucket.size; i++, k++) {
+                    rows[k] = index[bucket.row(i)];
+                    cols[k] = index[bucket.col(i)];
+                    ws[k] = bucket.weight(i);
+                }
+                buckets[s][q] = null;
+            }
+            int[] byRow = countingSort(rows, size, countingSort(cols, size, identity(count)));
+
+            EntryList rowEntries = new EntryList();
+            for (int entry : byRow) {
+                int last = rowEntries.size - 1;
+                if (last >= 0 && rowEntries.row(last) == rows[entry] && rowEntries.col(last) == cols[entry]) {
+                    rowEntries.addWeight(last, ws[entry]);
+                } else {
+                    rowEntries.add(rows[entry], cols[entry], ws[entry]);
+                    rowLength[rows[entry]]++;
+                }
+            }
+            summed[q] = rowEntries;
+        });
+
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) offsets[i + 1] = offsets[i] + rowLength[i];
+        int[] neighbors = new int[offsets[size]];
+        int[] links = new int[offsets[size]];
+        runParallel(partitions, threadCount, q -> {
+            EntryList rowEntries = summed[q];
+            for (int i = 0, row = -1, at = 0; i < rowEntries.size; i++, at++) {
+                if (rowEntries.row(i) != row) {
+                    row = rowEntries.row(i);
+                    at = offsets[row];
+                }
+                neighbors[at] = rowEntries.col(i);
+                links[at] = rowEntries.weight(i);
+            }
+        });
+        return new CouplingMatrix(classes, offsets, neighbors, links, totalCalls);
+    }
+
+    // Runs task(0) .. task(tasks - 1) on up to threadCount threads and waits for all of them
+    private static void runParallel(int tasks, int threadCount, IntConsumer task) {
+        if (threadCount <= 1 || tasks <= 1) {
+            for (int t = 0; t < tasks; t++) task.accept(t);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threadCount, tasks));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < tasks; t++) {
+                int id = t;
+                futures.add(pool.submit(() -> task.accept(id)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
             }
-            matrix.put(c1, row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Coupling computation interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            Cancellation.shutdownAndWait(pool);
         }
-        return matrix;
+    }
+
+    // Stable order of items by keys[item], keys in [0, keyCount)
+    private static int[] countingSort(int[] keys, int keyCount, int[] items) {
+        int[] start = new int[keyCount + 1];
+        for (int item : items) start[keys[item] + 1]++;
+        for (int k = 0; k < keyCount; k++) start[k + 1] += start[k];
+        int[] sorted = new int[items.length];
+        for (int item : items) sorted[start[keys[item]]++] = item;
+        return sorted;
+    }
+
+    private static int[] identity(int n) {
+        int[] items = new int[n];
+        for (int i = 0; i < n; i++) items[i] = i;
+        return items;
+    }
+
+    // Growable list of (row, column, weight) entries packed in one int array
+    private static final class EntryList {
+        private int[] data = new int[48];
+        private int size;
+
+        void add(int row, int col, int weight) {
+            if (3 * size == data.length) data = Arrays.copyOf(data, data.length * 2);
+            data[3 * size] = row;
+            data[3 * size + 1] = col;
+            data[3 * size + 2] = weight;
+            size++;
+        }
+
+        void addWeight(int i, int weight) { data[3 * i + 2] += weight; }
+        int row(int i) { return data[3 * i]; }
+        int col(int i) { return data[3 * i + 1]; }
+        int weight(int i) { return data[3 * i + 2]; }
     }
 
     // Optional: Print matrix
-    public static void printMatrix(Map<String, Map<String, Double>> matrix) {
-        List<String> sorted = new ArrayList<>(matrix.keySet());
-        Collections.sort(sorted);
+    public static void printMatrix(CouplingMatrix matrix) {
         System.out.printf("%15s", "");
-        for (String c : sorted) System.out.printf("%15s", shortName(c));
+        for (int i = 0; i < matrix.size(); i++) System.out.printf("%15s", shortName(matrix.className(i)));
         System.out.println();
-        for (String c1 : sorted) {
-            System.out.printf("%15s", shortName(c1));
-            for (String c2 : sorted) {
-                if (c1.equals(c2)) {
+        for (int i = 0; i < matrix.size(); i++) {
+            System.out.printf("%15s", shortName(matrix.className(i)));
+            for (int j = 0; j < matrix.size(); j++) {
+                if (i == j) {
                     System.out.printf("%15s", "-");
                 } else {
-                    System.out.printf("%15.3f", matrix.get(c1).getOrDefault(c2, 0.0));
+                    System.out.printf("%15.3f", matrix.coupling(i, j));
                 }
             }
             System.out.println();
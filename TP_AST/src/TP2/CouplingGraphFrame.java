@@ -1,104 +1,308 @@
 // src/TP2/CouplingGraphFrame.java
 package TP2;
 
+import Parser.ForceLayout;
+import Parser.ParserConfig;
+import Parser.TileCache;
+
 import javax.swing.*;
 import java.awt.*;
-import java.util.*;
-import java.util.List;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.Map;
 
 public class CouplingGraphFrame extends JFrame {
-    private final Map<String, Map<String, Double>> matrix;
-    private final List<String> classes;
+    private static final Font EDGE_FONT = new Font("Arial", Font.BOLD, 10);
+    private static final Font NODE_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final Font LEGEND_FONT = new Font("Arial", Font.PLAIN, 12);
+    private static final Stroke EDGE_STROKE = new BasicStroke(1.5f);
+    private static final Color NODE_COLOR = new Color(0, 120, 215);
+    // edge colour by opacity
+    private static final Color[] EDGE_COLORS = new Color[256];
+
+    static {
+        for (int alpha = 0; alpha < EDGE_COLORS.length; alpha++) EDGE_COLORS[alpha] = new Color(0, 100, 200, alpha);
+    }
+
+    private CouplingMatrix matrix;
+    private final GraphPanel panel;
 
-    public CouplingGraphFrame(Map<String, Map<String, Double>> matrix) {
+    public CouplingGraphFrame(CouplingMatrix matrix) {
         this.matrix = matrix;
-        this.classes = new ArrayList<>(matrix.keySet());
-        Collections.sort(classes);
 
         setTitle("Coupling Graph (Interactive)");
         setSize(900, 700);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        add(new GraphPanel());
+        panel = new GraphPanel();
+        add(panel);
+        panel.relayout();
         setVisible(true);
     }
 
+    public void updateMatrix(CouplingMatrix matrix) {
+        this.matrix = matrix;
+        panel.relayout();
+    }
+
+    // The classes are laid out by a ForceLayout per matrix, on a worker that streams its positions in, and
+    // each set of positions is fitted to the panel and drawn in background tiles; only the legend is painted
+    // directly
     private class GraphPanel extends JPanel {
-        private final int NODE_RADIUS = 30;
-        private final int MARGIN = 80;
+        private final TileCache tiles = new TileCache(this);
+        private final Rectangle clip = new Rectangle();
+        private SwingWorker<Void, double[][]> layout;
+        // layout positions of the classes of matrix, in the layout's own units
+        private double[] layoutX = new double[0], layoutY = new double[0];
+        private Dimension laidOutFor;
 
         public GraphPanel() {
             setBackground(Color.WHITE);
         }
 
+        // Couplings are the edge weights, relative to the mean, so tightly coupled classes end up close
+        void relayout() {
+            if (layout != null) layout.cancel(true);
+            int n = matrix.size();
+            double total = 0;
+            int edges = 0;
+            for (int c1 = 0; c1 < n; c1++) {
+                for (int e = matrix.rowStart(c1); e < matrix.rowEnd(c1); e++) {
+                    if (matrix.neighbor(e) <= c1) continue;
+                    total += matrix.coupling(e);
+                    edges++;
+                }
+            }
+            int[] edgeFrom = new int[edges], edgeTo = new int[edges];
+            double[] edgeWeight = new double[edges];
+            for (int c1 = 0, k = 0; c1 < n; c1++) {
+                for (int e = matrix.rowStart(c1); e < matrix.rowEnd(c1); e++) {
+                    if (matrix.neighbor(e) <= c1) continue;
+                    edgeFrom[k] = c1;
+                    edgeTo[k] = matrix.neighbor(e);
+                    edgeWeight[k++] = total == 0 ? 1 : matrix.coupling(e) * edges / total;
+                }
+            }
+            ForceLayout force = new ForceLayout(n, edgeFrom, edgeTo, edgeWeight, ParserConfig.LAYOUT_SEED);
+            place(force.x(), force.y());
+            layout = force.start(ForceLayout.DEFAULT_ITERATIONS, (x, y, done) -> place(x, y));
+        }
+
+        private void place(double[] x, double[] y) {
+            layoutX = x;
+            layoutY = y;
+            laidOutFor = null;
+            repaint();
+        }
+
+        @Override
+        public void removeNotify() {
+            if (layout != null) layout.cancel(true);
+            super.removeNotify();
+        }
+
         @Override
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
             Graphics2D g2d = (Graphics2D) g;
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-            int w = getWidth() - 2 * MARGIN;
-            int h = getHeight() - 2 * MARGIN;
-            int n = classes.size();
-            if (n == 0) return;
+            if (matrix.size() == 0) return;
+            if (!getSize().equals(laidOutFor)) {
+                laidOutFor = getSize();
+                tiles.setScene(new CouplingScene(matrix, layoutX, layoutY, laidOutFor, getFontMetrics(NODE_FONT)));
+            }
+            // left unchanged when there is no clip
+            clip.setBounds(0, 0, getWidth(), getHeight());
+            g2d.getClipBounds(clip);
+            tiles.paint(g2d, 1.0, 0, 0, clip);
 
-            Map<String, Point> pos = new HashMap<>();
+            // Legend
+            g2d.setColor(Color.BLACK);
+            g2d.setFont(LEGEND_FONT);
+            g2d.drawString("Edge opacity = coupling strength", 20, getHeight() - 30);
+            g2d.drawString("Red labels = >0.1", 20, getHeight() - 15);
+        }
+    }
+
+    // Classes at their layout positions, fitted to the panel, painted on the tile threads. While the
+    // classes have room for their circles, each class is a labeled circle and each coupled pair a line; once
+    // they crowd, classes are dots and the couplings between two cells of a coarse grid are summed into one
+    // line between the middles of the classes in them.
+    private static final class CouplingScene implements TileCache.Scene {
+        private static final int NODE_RADIUS = 30;
+        private static final int DOT_RADIUS = 3;
+        private static final int MARGIN = 80;
+        private static final int BUNDLE_CELL = 24;
+        private static final int MIN_CHORD_ALPHA = 8;
+
+        private final int[] x, y;
+        private final String[] names;
+        private final int[] nameWidth;
+        // pairs coupled above 0.01, each once
+        private final int[] edgeFrom, edgeTo;
+        private final double[] edgeCoupling;
+        private final boolean crowded;
+        // the pairs between two grid cells summed, for the crowded view, with an opacity relative to the
+        // strongest chord
+        private final int[] chordFrom, chordTo;
+        private final int[] chordAlpha;
+        private final int[] cellX, cellY;
+
+        CouplingScene(CouplingMatrix matrix, double[] layoutX, double[] layoutY, Dimension size, FontMetrics nameMetrics) {
+            int n = matrix.size();
+            int w = Math.max(1, size.width - 2 * MARGIN);
+            int h = Math.max(1, size.height - 2 * MARGIN);
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                minX = Math.min(minX, layoutX[i]);
+                maxX = Math.max(maxX, layoutX[i]);
+                minY = Math.min(minY, layoutY[i]);
+                maxY = Math.max(maxY, layoutY[i]);
+            }
+            // the same scale both ways, centred
+            double scale = Math.min(w / Math.max(maxX - minX, 1e-9), h / Math.max(maxY - minY, 1e-9));
+            double offsetX = MARGIN + (w - (maxX - minX) * scale) / 2;
+            double offsetY = MARGIN + (h - (maxY - minY) * scale) / 2;
+            x = new int[n];
+            y = new int[n];
+            names = new String[n];
+            nameWidth = new int[n];
             for (int i = 0; i < n; i++) {
-                double angle = 2 * Math.PI * i / n;
-                int x = MARGIN + (int) (w / 2 + (w / 2 - 60) * Math.cos(angle));
-                int y = MARGIN + (int) (h / 2 + (h / 2 - 60) * Math.sin(angle));
-                pos.put(classes.get(i), new Point(x, y));
-            }
-
-            // Draw edges
-            g2d.setStroke(new BasicStroke(1.5f));
-            for (String c1 : classes) {
-                for (String c2 : classes) {
-                    if (c1.compareTo(c2) >= 0) continue;
-                    double coup = matrix.get(c1).getOrDefault(c2, 0.0);
-                    if (coup < 0.01) continue;
-
-                    Point p1 = pos.get(c1);
-                    Point p2 = pos.get(c2);
-                    int alpha = (int) (255 * Math.min(coup * 3, 1.0));
-                    g2d.setColor(new Color(0, 100, 200, alpha));
-                    g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
-
-                    // Label
-                    if (coup > 0.1) {
-                        int mx = (p1.x + p2.x) / 2;
-                        int my = (p1.y + p2.y) / 2;
-                        g2d.setColor(Color.RED);
-                        g2d.setFont(new Font("Arial", Font.BOLD, 10));
-                        g2d.drawString(String.format("%.2f", coup), mx + 5, my - 5);
+                x[i] = (int) Math.round(offsetX + (layoutX[i] - minX) * scale);
+                y[i] = (int) Math.round(offsetY + (layoutY[i] - minY) * scale);
+                names[i] = shortName(matrix.className(i));
+                nameWidth[i] = nameMetrics.stringWidth(names[i]);
+            }
+            crowded = Math.sqrt((double) w * h / n) < 2 * NODE_RADIUS;
+
+            int edges = 0;
+            for (int c1 = 0; c1 < n; c1++) {
+                for (int e = matrix.rowStart(c1); e < matrix.rowEnd(c1); e++) {
+                    if (matrix.neighbor(e) > c1 && matrix.coupling(e) >= 0.01) edges++;
+                }
+            }
+            edgeFrom = new int[edges];
+            edgeTo = new int[edges];
+            edgeCoupling = new double[edges];
+            for (int c1 = 0, k = 0; c1 < n; c1++) {
+                for (int e = matrix.rowStart(c1); e < matrix.rowEnd(c1); e++) {
+                    if (matrix.neighbor(e) <= c1 || matrix.coupling(e) < 0.01) continue;
+                    edgeFrom[k] = c1;
+                    edgeTo[k] = matrix.neighbor(e);
+                    edgeCoupling[k++] = matrix.coupling(e);
+                }
+            }
+
+            // each class's grid cell, numbered in order of first use, and the middle of each used cell
+            int columns = size.width / BUNDLE_CELL + 1;
+            int[] cellOf = new int[n];
+            Map<Integer, Integer> cellIds = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                int gridCell = Math.floorDiv(y[i], BUNDLE_CELL) * columns + Math.floorDiv(x[i], BUNDLE_CELL);
+                cellOf[i] = cellIds.computeIfAbsent(gridCell, key -> cellIds.size());
+            }
+            int cells = cellIds.size();
+            long[] sumX = new long[cells], sumY = new long[cells];
+            int[] members = new int[cells];
+            for (int i = 0; i < n; i++) {
+                sumX[cellOf[i]] += x[i];
+                sumY[cellOf[i]] += y[i];
+                members[cellOf[i]]++;
+            }
+            cellX = new int[cells];
+            cellY = new int[cells];
+            for (int c = 0; c < cells; c++) {
+                cellX[c] = (int) (sumX[c] / members[c]);
+                cellY[c] = (int) (sumY[c] / members[c]);
+            }
+            // every coupled pair counts towards its chord, however weak on its own
+            Map<Long, Double> sums = new HashMap<>();
+            for (int c1 = 0; c1 < n; c1++) {
+                int a = cellOf[c1];
+                for (int e = matrix.rowStart(c1); e < matrix.rowEnd(c1); e++) {
+                    int b = cellOf[matrix.neighbor(e)];
+                    if (matrix.neighbor(e) > c1 && a != b) {
+                        sums.merge((long) Math.min(a, b) * cells + Math.max(a, b), matrix.coupling(e), Double::sum);
                     }
                 }
             }
+            double strongest = 0;
+            for (double sum : sums.values()) strongest = Math.max(strongest, sum);
+            int chords = 0;
+            for (double sum : sums.values()) {
+                if ((int) (255 * sum / strongest) >= MIN_CHORD_ALPHA) chords++;
+            }
+            chordFrom = new int[chords];
+            chordTo = new int[chords];
+            chordAlpha = new int[chords];
+            int k = 0;
+            for (Map.Entry<Long, Double> chord : sums.entrySet()) {
+                int alpha = (int) (255 * chord.getValue() / strongest);
+                if (alpha < MIN_CHORD_ALPHA) continue;
+                chordFrom[k] = (int) (chord.getKey() / cells);
+                chordTo[k] = (int) (chord.getKey() % cells);
+                chordAlpha[k++] = alpha;
+            }
+        }
+
+        @Override
+        public void paint(Graphics2D g, Rectangle2D world, double zoom) {
+            Rectangle area = world.getBounds();
+            area.grow(NODE_RADIUS + 40, NODE_RADIUS);
+            g.setStroke(EDGE_STROKE);
+            if (crowded) {
+                for (int k = 0; k < chordFrom.length; k++) {
+                    drawEdge(g, area, cellX[chordFrom[k]], cellY[chordFrom[k]], cellX[chordTo[k]], cellY[chordTo[k]],
+                            chordAlpha[k]);
+                }
+                g.setColor(NODE_COLOR);
+                for (int c = 0; c < x.length; c++) {
+                    if (!area.contains(x[c], y[c])) continue;
+                    g.fillOval(x[c] - DOT_RADIUS, y[c] - DOT_RADIUS, 2 * DOT_RADIUS, 2 * DOT_RADIUS);
+                }
+                return;
+            }
+
+            // Draw edges, each coupled pair once
+            g.setFont(EDGE_FONT);
+            for (int k = 0; k < edgeFrom.length; k++) {
+                int x1 = x[edgeFrom[k]], y1 = y[edgeFrom[k]], x2 = x[edgeTo[k]], y2 = y[edgeTo[k]];
+                int alpha = (int) (255 * Math.min(edgeCoupling[k] * 3, 1.0));
+                if (!drawEdge(g, area, x1, y1, x2, y2, alpha)) continue;
+
+                // Label
+                if (edgeCoupling[k] > 0.1) {
+                    g.setColor(Color.RED);
+                    g.drawString(String.format("%.2f", edgeCoupling[k]), (x1 + x2) / 2 + 5, (y1 + y2) / 2 - 5);
+                }
+            }
 
             // Draw nodes
-            for (String c : classes) {
-                Point p = pos.get(c);
-                g2d.setColor(new Color(0, 120, 215));
-                g2d.fillOval(p.x - NODE_RADIUS, p.y - NODE_RADIUS, 2 * NODE_RADIUS, 2 * NODE_RADIUS);
-                g2d.setColor(Color.WHITE);
-                g2d.setFont(new Font("Arial", Font.BOLD, 12));
-                String name = shortName(c);
-                FontMetrics fm = g2d.getFontMetrics();
-                int sw = fm.stringWidth(name);
-                g2d.drawString(name, p.x - sw / 2, p.y + 5);
+            g.setFont(NODE_FONT);
+            for (int c = 0; c < x.length; c++) {
+                if (!area.contains(x[c], y[c])) continue;
+                g.setColor(NODE_COLOR);
+                g.fillOval(x[c] - NODE_RADIUS, y[c] - NODE_RADIUS, 2 * NODE_RADIUS, 2 * NODE_RADIUS);
+                g.setColor(Color.WHITE);
+                g.drawString(names[c], x[c] - nameWidth[c] / 2, y[c] + 5);
             }
+        }
 
-            // Legend
-            g2d.setColor(Color.BLACK);
-            g2d.setFont(new Font("Arial", Font.PLAIN, 12));
-            g2d.drawString("Edge opacity = coupling strength", 20, getHeight() - 30);
-            g2d.drawString("Red labels = >0.1", 20, getHeight() - 15);
+        // Whether the line crossed area and was drawn
+        private static boolean drawEdge(Graphics2D g, Rectangle area, int x1, int y1, int x2, int y2, int alpha) {
+            if (Math.max(x1, x2) < area.x || Math.min(x1, x2) > area.x + area.width
+                    || Math.max(y1, y2) < area.y || Math.min(y1, y2) > area.y + area.height) return false;
+            g.setColor(EDGE_COLORS[alpha]);
+            g.drawLine(x1, y1, x2, y2);
+            return true;
         }
 
-        private String shortName(String fqn) {
+        private static String shortName(String fqn) {
             int dot = fqn.lastIndexOf('.');
             return dot == -1 ? fqn : fqn.substring(dot + 1);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+package TP2;
+
+import java.util.Arrays;
+
+// Symmetric sparse class coupling matrix in compressed sparse row form. Classes are indexed in sorted
+// name order; the neighbours of class i are neighbor(rowStart(i) .. rowEnd(i)), sorted by index, each
+// with the number of calls between the two classes in either direction. Only classes with at least one
+// call to or from another class are rows, and zero couplings are never stored.
+// Coupling(A,B) = calls between A and B in both directions / all calls between two distinct classes.
+public class CouplingMatrix {
+    private final String[] classes;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final int[] links;
+    private final long totalCalls;
+
+    CouplingMatrix(String[] classes, int[] offsets, int[] neighbors, int[] links, long totalCalls) {
+        this.classes = classes;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.links = links;
+        this.totalCalls = totalCalls;
+    }
+
+    public int size() { return classes.length; }
+    public String className(int i) { return classes[i]; }
+    public long totalCalls() { return totalCalls; }
+
+    // Each coupled pair is stored twice, once in the row of each class
+    public int entryCount() { return neighbors.length; }
+    public int rowStart(int i) { return offsets[i]; }
+    public int rowEnd(int i) { return offsets[i + 1]; }
+    public int neighbor(int entry) { return neighbors[entry]; }
+    public int links(int entry) { return links[entry]; }
+
+    public double coupling(int entry) {
+        return (double) links[entry] / totalCalls;
+    }
+
+    // 0 when the classes never call each other
+    public double coupling(int i, int j) {
+        int entry = Arrays.binarySearch(neighbors, offsets[i], offsets[i + 1], j);
+        return entry >= 0 ? coupling(entry) : 0.0;
+    }
+
+    // -1 when the class is not coupled to any other class
+    public int indexOf(String className) {
+        int i = Arrays.binarySearch(classes, className);
+        return i >= 0 ? i : -1;
+    }
+
+    public double coupling(String a, String b) {
+        int i = indexOf(a);
+        int j = indexOf(b);
+        return i >= 0 && j >= 0 ? coupling(i, j) : 0.0;
+    }
+}
@@ -0,0 +1,313 @@
+package TP2;
+
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Set;
+
+// A HAC tree stored as a linkage matrix, built once and cut as often as needed. Node ids follow scipy:
+// 0..n-1 are the classes, n + m is the m-th merge, whose children were created before it. From these
+// arrays the left-to-right leaf order, the leaf range of every node and a preorder of the nodes are
+// derived once, so member sets are views over a range and a cut is a single pass that skips the subtrees
+// it keeps whole: O(nodes) per cut, with no recursion however deep the tree is.
+public class Dendrogram {
+    private final Linkage linkage;
+    private final String[] classNames;
+    // merge m joins left[m] and right[m] at coupling height[m], covering size[m] classes
+    private final int[] left;
+    private final int[] right;
+    private final double[] height;
+    private final int[] size;
+
+    private final int[] leafOrder;
+    // position in leafOrder of the first leaf under each node; its leaves follow contiguously
+    private final int[] firstLeaf;
+    private final int[] leafPosition;
+    private final int[] preorder;
+    // position of each merge node in the order cutInto undoes merges, weakest first; MAX_VALUE for leaves
+    private final int[] splitRank;
+    private final double minCoupling;
+    private final double maxCoupling;
+    private Map<String, Integer> classIds;
+
+    Dendrogram(String[] classNames, int[] left, int[] right, double[] height, Linkage linkage) {
+        this.linkage = linkage;
+        this.classNames = classNames;
+        this.left = left;
+        this.right = right;
+        this.height = height;
+        int n = classNames.length;
+        int merges = Math.max(0, n - 1);
+        size = new int[merges];
+        for (int m = 0; m < merges; m++) size[m] = size(left[m]) + size(right[m]);
+
+        int nodeCount = n + merges;
+        leafOrder = new int[n];
+        firstLeaf = new int[nodeCount];
+        leafPosition = new int[n];
+        preorder = new int[nodeCount];
+        if (n > 0) {
+            int[] pending = new int[nodeCount];
+            int top = 0, visited = 0, leaves = 0;
+            pending[top++] = rootId();
+            while (top > 0) {
+                int node = pending[--top];
+                preorder[visited++] = node;
+                // a node comes before all of its leaves, so its range starts at the leaves seen so far
+                firstLeaf[node] = leaves;
+                if (isLeaf(node)) {
+                    leafPosition[node] = leaves;
+                    leafOrder[leaves++] = node;
+                } else {
+                    pending[top++] = right(node);
+                    pending[top++] = left(node);
+                }
+            }
+        }
+
+        double min = 0.0, max = 0.0;
+        for (int m = 0; m < merges; m++) {
+            min = m == 0 ? height[m] : Math.min(min, height[m]);
+            max = m == 0 ? height[m] : Math.max(max, height[m]);
+        }
+        minCoupling = min;
+        maxCoupling = max;
+
+        // cutInto splits the weakest merge among the current modules first; a node only becomes a candidate
+        // once its parent is split, so the first k - 1 ranks are always the top of the tree. Ties go to the
+        // latest merge, the one HAC would have made last.
+        splitRank = new int[nodeCount];
+        Arrays.fill(splitRank, Integer.MAX_VALUE);
+        PriorityQueue<Integer> candidates = new PriorityQueue<>((a, b) -> {
+            int c = Double.compare(height[a - n], height[b - n]);
+            return c != 0 ? c : Integer.compare(b, a);
+        });
+        if (merges > 0) candidates.add(rootId());
+        for (int rank = 0; !candidates.isEmpty(); rank++) {
+            int node = candidates.poll();
+            splitRank[node] = rank;
+            if (!isLeaf(left(node))) candidates.add(left(node));
+            if (!isLeaf(right(node))) candidates.add(right(node));
+        }
+    }
+
+    public static Dendrogram build(CouplingMatrix matrix, Linkage linkage) {
+        return ModuleIdentifier.cluster(matrix, linkage);
+    }
+
+    public Linkage linkage() { return linkage; }
+    public int leafCount() { return classNames.length; }
+    public int nodeCount() { return preorder.length; }
+
+    // null for an empty tree
+    public ModuleIdentifier.ClusterNode root() {
+        return classNames.length == 0 ? null : node(rootId());
+    }
+
+    public ModuleIdentifier.ClusterNode node(int node) {
+        return new ModuleIdentifier.ClusterNode(this, node);
+    }
+
+    // -1 for an empty tree
+    public int rootId() {
+        int n = classNames.length;
+        return n == 0 ? -1 : n == 1 ? 0 : 2 * n - 2;
+    }
+
+    public boolean isLeaf(int node) { return node < classNames.length; }
+    public int left(int node) { return isLeaf(node) ? -1 : left[node - classNames.length]; }
+    public int right(int node) { return isLeaf(node) ? -1 : right[node - classNames.length]; }
+
+    // Coupling at which the node was merged, 0 for a class
+    public double coupling(int node) { return isLeaf(node) ? 0.0 : height[node - classNames.length]; }
+
+    // Number of classes under the node
+    public int size(int node) { return isLeaf(node) ? 1 : size[node - classNames.length]; }
+
+    public String className(int leaf) { return classNames[leaf]; }
+
+    // The leaves under a node are leafAt(firstLeaf(node)) .. leafAt(firstLeaf(node) + size(node) - 1)
+    public int firstLeaf(int node) { return firstLeaf[node]; }
+    public int leafAt(int position) { return leafOrder[position]; }
+
+    // Node ids, each node before its subtree, left before right; a subtree of node p is the
+    // 2 * size(p) - 1 entries from p on
+    public int preorder(int position) { return preorder[position]; }
+
+    // Range of the merge couplings, 0 when there is no merge
+    public double minCoupling() { return minCoupling; }
+    public double maxCoupling() { return maxCoupling; }
+
+    // Read-only view of the classes under a node; contains() is a range check
+    public Set<String> classes(int node) {
+        return new ClassRange(firstLeaf[node], size(node));
+    }
+
+    // The same classes in leaf order
+    public List<String> leaves(int node) {
+        return new LeafList(firstLeaf[node], size(node));
+    }
+
+    // Modules are the largest subtrees whose merge coupling is above CP, read from the root down; a class
+    // that joins no such subtree is a module on its own
+    public List<Set<String>> cutAt(double cp) {
+        int[] roots = moduleRoots(cp);
+        List<Set<String>> modules = new ArrayList<>(roots.length);
+        for (int node : roots) modules.add(classes(node));
+        return modules;
+    }
+
+    // Root node of each module of cutAt(cp), left to right
+    int[] moduleRoots(double cp) {
+        int[] roots = new int[moduleCount(cp)];
+        int count = 0;
+        for (int p = 0; p < preorder.length; ) {
+            int node = preorder[p];
+            if (isLeaf(node) || height[node - classNames.length] > cp) {
+                roots[count++] = node;
+                p += 2 * size(node) - 1;
+            } else {
+                p++;
+            }
+        }
+        return roots;
+    }
+
+    public int moduleCount(double cp) {
+        int count = 0;
+        for (int p = 0; p < preorder.length; ) {
+            int node = preorder[p];
+            if (isLeaf(node) || height[node - classNames.length] > cp) {
+                count++;
+                p += 2 * size(node) - 1;
+            } else {
+                p++;
+            }
+        }
+        return count;
+    }
+
+    // Exactly moduleCount modules (clamped to 1..leafCount), undoing the weakest merges first
+    public List<Set<String>> cutInto(int moduleCount) {
+        int splits = Math.max(0, Math.min(moduleCount, leafCount()) - 1);
+        List<Set<String>> modules = new ArrayList<>();
+        for (int p = 0; p < preorder.length; ) {
+            int node = preorder[p];
+            if (splitRank[node] >= splits) {
+                modules.add(classes(node));
+                p += 2 * size(node) - 1;
+            } else {
+                p++;
+            }
+        }
+        return modules;
+    }
+
+    private int classId(String className) {
+        if (classIds == null) {
+            Map<String, Integer> ids = new HashMap<>(classNames.length * 2);
+            for (int i = 0; i < classNames.length; i++) ids.put(classNames[i], i);
+            classIds = ids;
+        }
+        return classIds.getOrDefault(className, -1);
+    }
+
+    private final class ClassRange extends AbstractSet<String> {
+        private final int first;
+        private final int count;
+
+        ClassRange(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String className)) return false;
+            int leaf = classId(className);
+            return leaf >= 0 && leafPosition[leaf] >= first && leafPosition[leaf] < first + count;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<>() {
+                private int position = first;
+
+                @Override
+                public boolean hasNext() {
+                    return position < first + count;
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return classNames[leafOrder[position++]];
+                }
+            };
+        }
+    }
+
+    private final class LeafList extends AbstractList<String> implements RandomAccess {
+        private final int first;
+        private final int count;
+
+        LeafList(int first, int count) {
+            this.first = first;
+            this.count = count;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException(index);
+            return classNames[leafOrder[first + index]];
+        }
+    }
+
+    // Records merges in the order they are made; a leaf is the slot of its class in classNames
+    static final class Builder {
+        private final String[] classNames;
+        private final int[] left;
+        private final int[] right;
+        private final double[] height;
+        private int merges;
+
+        Builder(String[] classNames) {
+            this.classNames = classNames;
+            int capacity = Math.max(0, classNames.length - 1);
+            left = new int[capacity];
+            right = new int[capacity];
+            height = new double[capacity];
+        }
+
+        // Returns the id of the new node
+        int merge(int a, int b, double coupling) {
+            left[merges] = a;
+            right[merges] = b;
+            height[merges] = coupling;
+            return classNames.length + merges++;
+        }
+
+        Dendrogram build(Linkage linkage) {
+            if (merges != left.length) throw new IllegalStateException(merges + " merges for " + classNames.length + " classes");
+            return new Dendrogram(classNames, left, right, height, linkage);
+        }
+    }
+}
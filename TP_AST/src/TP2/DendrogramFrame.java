@@ -2,15 +2,47 @@ package TP2;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.Locale;
 
 public class DendrogramFrame extends JFrame {
-    public DendrogramFrame(ModuleIdentifier.ClusterNode root) {
-        setTitle("Coupling Dendrogram (HAC)");
+    private static final int SLIDER_STEPS = 1000;
+
+    private JScrollPane treeScrollPane;
+    private DendrogramPanel treePanel;
+    private Dendrogram dendrogram;
+    private double cp;
+    private boolean syncing;
+    private final JSlider cpSlider = new JSlider(0, SLIDER_STEPS, 0);
+    private final JLabel cutLabel = new JLabel();
+
+    public DendrogramFrame(Dendrogram dendrogram) {
+        this(dendrogram, 0.02);
+    }
+
+    public DendrogramFrame(Dendrogram dendrogram, double cp) {
+        this.dendrogram = dendrogram;
+        this.cp = cp;
+        setTitle("Coupling Dendrogram (HAC, " + dendrogram.linkage() + " linkage)");
         setSize(1300, 800);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
 
-        add(new JScrollPane(new DendrogramPanel(root)));
+        treePanel = new DendrogramPanel(dendrogram);
+        treeScrollPane = new JScrollPane(treePanel);
+        add(treeScrollPane);
+
+        // The tree is only cut again while the slider moves, never rebuilt
+        JPanel cutPanel = new JPanel(new BorderLayout(10, 0));
+        cutPanel.setBorder(BorderFactory.createTitledBorder("Coupling threshold (CP)"));
+        cutLabel.setFont(new Font("Monospaced", Font.BOLD, 13));
+        cutPanel.add(cpSlider, BorderLayout.CENTER);
+        cutPanel.add(cutLabel, BorderLayout.EAST);
+        cpSlider.addChangeListener(e -> {
+            if (syncing) return;
+            this.cp = sliderToCp(cpSlider.getValue());
+            updateCut();
+        });
+        add(cutPanel, BorderLayout.SOUTH);
 
         JPanel legend = new JPanel();
         legend.setLayout(new BoxLayout(legend, BoxLayout.Y_AXIS));
@@ -19,14 +51,49 @@ public class DendrogramFrame extends JFrame {
         addLegendEntry(legend, "Horizontal lines = merge points");
         addLegendEntry(legend, "Red numbers = coupling strength");
         addLegendEntry(legend, "Leaf nodes = class names");
+        addLegendEntry(legend, "Colours = modules above CP");
         add(legend, BorderLayout.EAST);
 
+        syncSlider();
         setVisible(true);
     }
 
+    public Linkage getLinkage() {
+        return dendrogram.linkage();
+    }
+
+    // Keeps the chosen CP; the slider range follows the couplings of the new tree
+    public void updateDendrogram(Dendrogram dendrogram) {
+        this.dendrogram = dendrogram;
+        treePanel = new DendrogramPanel(dendrogram);
+        treeScrollPane.setViewportView(treePanel);
+        syncSlider();
+    }
+
+    private void syncSlider() {
+        double min = dendrogram.minCoupling(), max = dendrogram.maxCoupling();
+        int value = max > min ? (int) Math.round((cp - min) / (max - min) * SLIDER_STEPS) : 0;
+        // the slider is only a position for cp here, which must not be rounded to a step
+        syncing = true;
+        cpSlider.setValue(Math.max(0, Math.min(SLIDER_STEPS, value)));
+        syncing = false;
+        updateCut();
+    }
+
+    private double sliderToCp(int value) {
+        double min = dendrogram.minCoupling(), max = dendrogram.maxCoupling();
+        return min + (max - min) * value / SLIDER_STEPS;
+    }
+
+    private void updateCut() {
+        int modules = dendrogram.moduleCount(cp);
+        cutLabel.setText(String.format(Locale.ROOT, "CP = %.4f   %d / %d modules", cp, modules, dendrogram.leafCount()));
+        treePanel.setCutThreshold(cp);
+    }
+
     private void addLegendEntry(JPanel p, String text) {
         JLabel l = new JLabel("• " + text);
         l.setFont(new Font("Arial", Font.PLAIN, 13));
         p.add(l);
     }
-}
\ No newline at end of file
+}
@@ -3,76 +3,75 @@ package TP2;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.*;
-import java.util.List;
 
+// Draws a Dendrogram with its leaves in tree order, so merge lines never cross. Positions and labels are
+// computed once from the linkage arrays; painting reads them, skips the merges outside the clip and only
+// allocates a label the first time it is shown.
 public class DendrogramPanel extends JPanel {
-    private final ModuleIdentifier.ClusterNode root;
-    private final Map<String, Integer> leafX = new HashMap<>();
-    private final Map<ModuleIdentifier.ClusterNode, Integer> nodeY = new HashMap<>();
-    private final List<String> orderedLeaves = new ArrayList<>();
-    private int maxDepth = 0;
-
-    public DendrogramPanel(ModuleIdentifier.ClusterNode root) {
-        this.root = root;
+    private static final int LEFT_MARGIN = 100;
+    private static final int BASE_Y = 650;
+    private static final Stroke STROKE = new BasicStroke(2.5f);
+    private static final Font LEAF_FONT = new Font("Monospaced", Font.BOLD, 14);
+    private static final Font COUPLING_FONT = new Font("Arial", Font.BOLD, 12);
+    private static final Color[] MODULE_COLORS = {
+        new Color(0, 114, 178), new Color(213, 94, 0), new Color(0, 158, 115), new Color(204, 121, 167),
+        new Color(230, 159, 0), new Color(86, 180, 233), new Color(120, 60, 20), new Color(100, 100, 180)
+    };
+
+    private final Dendrogram dendrogram;
+    // by node id
+    private final int[] nodeX;
+    private final int[] nodeY;
+    // formatted the first time the node is drawn
+    private final String[] labels;
+    private final Rectangle clip = new Rectangle();
+    // merges above this coupling are drawn in the colour of their module; NaN draws no cut
+    private double cutThreshold = Double.NaN;
+
+    public DendrogramPanel(Dendrogram dendrogram) {
+        this.dendrogram = dendrogram;
+        int nodeCount = dendrogram.nodeCount();
+        nodeX = new int[nodeCount];
+        nodeY = new int[nodeCount];
+        labels = new String[nodeCount];
         setBackground(Color.WHITE);
-        setPreferredSize(new Dimension(1200, 700));
-        layoutTree();
-    }
-
-    private void layoutTree() {
-        if (root == null) return;
-
-        // FORCE ALL CLASSES FROM MATRIX INTO orderedLeaves
-        Set<String> allClasses = new HashSet<>();
-        collectAllClasses(root, allClasses);
-        orderedLeaves.clear();
-        orderedLeaves.addAll(allClasses);
-        Collections.sort(orderedLeaves); // Optional: sort for consistency
-
-        int leafCount = orderedLeaves.size();
-        if (leafCount == 0) return;
-
+        int leafCount = dendrogram.leafCount();
         int spacing = Math.max(60, 1000 / Math.max(1, leafCount - 1));
-        int x = 100;
-        for (String leaf : orderedLeaves) {
-            leafX.put(leaf, x);
-            x += spacing;
-        }
-
-        maxDepth = calculateDepth(root);
-        int heightPerLevel = 500 / Math.max(1, maxDepth);
-        assignY(root, 600 - heightPerLevel, heightPerLevel);
+        setPreferredSize(new Dimension(Math.max(1200, 2 * LEFT_MARGIN + spacing * Math.max(0, leafCount - 1)), 700));
+        layoutTree(spacing);
     }
 
-    private void collectAllClasses(ModuleIdentifier.ClusterNode node, Set<String> set) {
-        if (node == null) return;
-        if (node.isLeaf()) {
-            set.addAll(node.classes());
-        } else {
-            collectAllClasses(node.left(), set);
-            collectAllClasses(node.right(), set);
-        }
-    }
-
-    private int calculateDepth(ModuleIdentifier.ClusterNode node) {
-        if (node == null || node.isLeaf()) return 0;
-        return 1 + Math.max(calculateDepth(node.left()), calculateDepth(node.right()));
+    public void setCutThreshold(double cp) {
+        cutThreshold = cp;
+        repaint();
     }
 
-    private int assignY(ModuleIdentifier.ClusterNode node, int currentY, int levelHeight) {
-        if (node == null) return currentY;
-
-        if (node.isLeaf()) {
-            nodeY.put(node, currentY);
-            return currentY;
+    private void layoutTree(int spacing) {
+        int nodeCount = dendrogram.nodeCount();
+        if (nodeCount == 0) return;
+
+        // depth going down the preorder, then heights and positions coming back up, children first
+        int[] depth = new int[nodeCount];
+        int maxDepth = 0;
+        for (int p = 0; p < nodeCount; p++) {
+            int node = dendrogram.preorder(p);
+            if (dendrogram.isLeaf(node)) continue;
+            depth[dendrogram.left(node)] = depth[node] + 1;
+            depth[dendrogram.right(node)] = depth[node] + 1;
+            maxDepth = Math.max(maxDepth, depth[node] + 1);
+        }
+        int heightPerLevel = 500 / Math.max(1, maxDepth);
+        for (int p = nodeCount - 1; p >= 0; p--) {
+            int node = dendrogram.preorder(p);
+            if (dendrogram.isLeaf(node)) {
+                nodeX[node] = LEFT_MARGIN + spacing * dendrogram.firstLeaf(node);
+                nodeY[node] = 600 - heightPerLevel * (depth[node] + 1);
+            } else {
+                int left = dendrogram.left(node), right = dendrogram.right(node);
+                nodeX[node] = (nodeX[left] + nodeX[right]) / 2;
+                nodeY[node] = (nodeY[left] + nodeY[right]) / 2;
+            }
         }
-
-        int leftY = assignY(node.left(), currentY - levelHeight, levelHeight);
-        int rightY = assignY(node.right(), currentY - levelHeight, levelHeight);
-        int midY = (leftY + rightY) / 2;
-        nodeY.put(node, midY);
-        return midY;
     }
 
     @Override
@@ -80,70 +79,63 @@ public class DendrogramPanel extends JPanel {
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g;
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setStroke(new BasicStroke(2.5f));
-        g2d.setFont(new Font("Monospaced", Font.BOLD, 14));
-
-        if (root != null) drawNode(g2d, root);
-    }
-
-    private void drawNode(Graphics2D g2d, ModuleIdentifier.ClusterNode node) {
-        if (node == null) return;
-
-        if (node.isLeaf()) {
-            // DRAW ONLY IF CLASS IS IN leafX
-            for (String className : node.classes()) {
-                Integer xObj = leafX.get(className);
-                if (xObj == null) continue; // Skip if not in layout
-
-                int x = xObj;
-                int y = nodeY.getOrDefault(node, 650);
+        g2d.setStroke(STROKE);
+        // left unchanged when there is no clip
+        clip.setBounds(0, 0, getWidth(), getHeight());
+        g2d.getClipBounds(clip);
+        int clipLeft = clip.x - LEFT_MARGIN, clipRight = clip.x + clip.width + LEFT_MARGIN;
+
+        // the subtree of a module is contiguous in the preorder, so the module ends at a known position
+        int moduleEnd = 0, moduleColors = 0;
+        Color moduleColor = null;
+        for (int p = 0; p < dendrogram.nodeCount(); p++) {
+            int node = dendrogram.preorder(p);
+            if (p >= moduleEnd) moduleColor = null;
+
+            if (dendrogram.isLeaf(node)) {
+                int x = nodeX[node];
+                if (x < clipLeft || x > clipRight) continue;
                 g2d.setColor(Color.BLACK);
-                g2d.drawLine(x, y, x, 650); // vertical to base
-                g2d.drawString(shortName(className), x - 30, 670);
+                g2d.drawLine(x, nodeY[node], x, BASE_Y); // vertical to base
+                g2d.setFont(LEAF_FONT);
+                g2d.drawString(label(node), x - 30, BASE_Y + 20);
+                continue;
             }
-            return;
-        }
-
-        List<String> leftLeaves  = node.left().leaves();
-        List<String> rightLeaves = node.right().leaves();
-        if (leftLeaves.isEmpty() || rightLeaves.isEmpty()) return;
 
-        String leftmost  = leftLeaves.get(0);
-        String rightmost = rightLeaves.get(rightLeaves.size() - 1);
-
-        Integer x1Obj = leafX.get(leftmost);
-        Integer x2Obj = leafX.get(rightmost);
-        if (x1Obj == null || x2Obj == null) return;
-
-        int x1 = x1Obj;
-        int x2 = x2Obj;
-        int midX = (x1 + x2) / 2;
-        int y    = nodeY.getOrDefault(node, 650);
-
-        drawNode(g2d, node.left());
-        drawNode(g2d, node.right());
+            // the highest merge kept by the cut starts a module
+            if (moduleColor == null && dendrogram.coupling(node) > cutThreshold) {
+                moduleColor = MODULE_COLORS[moduleColors++ % MODULE_COLORS.length];
+                moduleEnd = p + 2 * dendrogram.size(node) - 1;
+            }
 
-        Integer leftY  = nodeY.get(node.left());
-        Integer rightY = nodeY.get(node.right());
-        if (leftY == null || rightY == null) return;
+            int left = dendrogram.left(node), right = dendrogram.right(node);
+            int x1 = nodeX[left], x2 = nodeX[right], y = nodeY[node];
+            if (x2 < clipLeft || x1 > clipRight) continue;
 
-        // HORIZONTAL MERGE LINE
-        g2d.setColor(Color.DARK_GRAY);
-        g2d.drawLine(x1, y, x2, y);
-        g2d.drawLine(x1, leftY,  x1, y);
-        g2d.drawLine(x2, rightY, x2, y);
+            // HORIZONTAL MERGE LINE
+            g2d.setColor(moduleColor != null ? moduleColor : Color.DARK_GRAY);
+            g2d.drawLine(x1, y, x2, y);
+            g2d.drawLine(x1, nodeY[left], x1, y);
+            g2d.drawLine(x2, nodeY[right], x2, y);
 
-        g2d.drawLine(midX, y, midX, 650);
+            // COUPLING VALUE
+            g2d.setColor(Color.RED);
+            g2d.setFont(COUPLING_FONT);
+            g2d.drawString(label(node), nodeX[node] + 8, y - 8);
+        }
+    }
 
-        // COUPLING VALUE
-        g2d.setColor(Color.RED);
-        g2d.setFont(new Font("Arial", Font.BOLD, 12));
-        g2d.drawString(String.format("%.3f", node.coupling()), midX + 8, y - 8);
-        g2d.setColor(Color.BLACK);
+    private String label(int node) {
+        if (labels[node] == null) {
+            labels[node] = dendrogram.isLeaf(node)
+                    ? shortName(dendrogram.className(node))
+                    : String.format("%.3f", dendrogram.coupling(node));
+        }
+        return labels[node];
     }
 
     private String shortName(String fqn) {
         int dot = fqn.lastIndexOf('.');
         return dot == -1 ? fqn : fqn.substring(dot + 1);
     }
-}
\ No newline at end of file
+}
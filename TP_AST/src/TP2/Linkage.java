@@ -0,0 +1,24 @@
+package TP2;
+
+// How the coupling between two clusters is derived from the couplings of their classes
+public enum Linkage {
+    // strongest class pair; built from a maximum spanning tree of the coupling graph
+    SINGLE("Single"),
+    // weakest class pair
+    COMPLETE("Complete"),
+    // mean over all class pairs, the original criterion
+    AVERAGE("Average"),
+    // Ward's minimum variance update on the distance 1 - coupling, favouring balanced clusters
+    WARD("Ward");
+
+    private final String label;
+
+    Linkage(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
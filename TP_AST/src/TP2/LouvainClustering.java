@@ -0,0 +1,312 @@
+package TP2;
+
+import Parser.Cancellation;
+import Parser.ParserConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+// Module identification by modularity optimization (Louvain): classes move to the neighbouring module that
+// raises the modularity the most, then every module becomes a single node and the moves start again on the
+// smaller graph, until no move helps. Unlike HAC it only looks at coupled pairs, so a pass is O(E) on the
+// sparse matrix. Edge weights are the link counts of the coupling matrix.
+//
+// The moves of a round are made in BATCHES interleaved slices of the nodes. Within a slice each node picks
+// its best module from the state left by the previous slice, in parallel, and the moves are then applied in
+// node order. The slices do not depend on the thread count, so neither does the result.
+public class LouvainClustering {
+    private static final int BATCHES = 16;
+    private static final int MAX_ROUNDS = 64;
+    // a level stops once a round raises the modularity by less than this
+    private static final double MIN_GAIN = 1e-6;
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    // One level of the graph: symmetric CSR without self loops, plus the weight of each node's self loop
+    // (the links inside the module it stands for) and its weighted degree, self loop counted twice
+    private record Graph(int size, int[] offsets, int[] neighbors, double[] weights, double[] self, double[] degree) {}
+
+    private final double resolution;
+    private final int threadCount;
+    private final ExecutorService pool;
+
+    private LouvainClustering(double resolution, int threadCount) {
+        this.resolution = resolution;
+        this.threadCount = threadCount;
+        this.pool = threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null;
+    }
+
+    public static List<Set<String>> identifyModules(CouplingMatrix matrix) {
+        return identifyModules(matrix, 1.0, ParserConfig.THREAD_COUNT);
+    }
+
+    // A resolution above 1 gives more, smaller modules; below 1 fewer, larger ones. The modules are listed
+    // in the order of their first class.
+    public static List<Set<String>> identifyModules(CouplingMatrix matrix, double resolution, int threadCount) {
+        int threads = matrix.size() < PARALLEL_THRESHOLD ? 1 : Math.max(1, threadCount);
+        LouvainClustering louvain = new LouvainClustering(resolution, threads);
+        try {
+            int[] module = louvain.run(toGraph(matrix));
+            int moduleCount = 0;
+            for (int m : module) moduleCount = Math.max(moduleCount, m + 1);
+            List<Set<String>> modules = new ArrayList<>(moduleCount);
+            for (int m = 0; m < moduleCount; m++) modules.add(new LinkedHashSet<>());
+            for (int i = 0; i < module.length; i++) modules.get(module[i]).add(matrix.className(i));
+            return modules;
+        } finally {
+            if (louvain.pool != null) Cancellation.shutdownAndWait(louvain.pool);
+        }
+    }
+
+    private static Graph toGraph(CouplingMatrix matrix) {
+        int n = matrix.size();
+        int[] offsets = new int[n + 1];
+        int[] neighbors = new int[matrix.entryCount()];
+        double[] weights = new double[matrix.entryCount()];
+        double[] degree = new double[n];
+        for (int i = 0; i < n; i++) {
+            offsets[i] = matrix.rowStart(i);
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                neighbors[e] = matrix.neighbor(e);
+                weights[e] = matrix.links(e);
+                degree[i] += weights[e];
+            }
+        }
+        offsets[n] = matrix.entryCount();
+        return new Graph(n, offsets, neighbors, weights, new double[n], degree);
+    }
+
+    // Module of each node of the graph, numbered in order of first appearance
+    private int[] run(Graph graph) {
+        int[] module = new int[graph.size()];
+        for (int i = 0; i < module.length; i++) module[i] = i;
+        while (graph.size() > 0) {
+            int[] community = moveNodes(graph);
+            int communityCount = renumber(community);
+            for (int i = 0; i < module.length; i++) module[i] = community[module[i]];
+            if (communityCount == graph.size()) break;
+            graph = aggregate(graph, community, communityCount);
+        }
+        return module;
+    }
+
+    // Local moving phase; returns the community of each node
+    private int[] moveNodes(Graph graph) {
+        int n = graph.size();
+        double m2 = 0.0;
+        for (int i = 0; i < n; i++) m2 += graph.degree()[i];
+        int[] community = new int[n];
+        int[] members = new int[n];
+        double[] total = graph.degree().clone();
+        for (int i = 0; i < n; i++) {
+            community[i] = i;
+            members[i] = 1;
+        }
+        if (m2 == 0.0) return community;
+
+        int[] proposal = new int[n];
+        int tasks = Math.min(threadCount, n);
+        double[][] weightTo = new double[tasks][n];
+        int[][] touched = new int[tasks][n];
+        double modularity = modularity(graph, community, total, m2);
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            Cancellation.checkCancelled();
+            int[] before = community.clone();
+            boolean moved = false;
+            for (int batch = 0; batch < BATCHES; batch++) {
+                int batchSize = (n - batch + BATCHES - 1) / BATCHES;
+                if (batchSize <= 0) continue;
+                int first = batch;
+                double totalWeight = m2;
+                runParallel(tasks, t -> {
+                    int from = (int) ((long) batchSize * t / tasks), to = (int) ((long) batchSize * (t + 1) / tasks);
+                    for (int k = from; k < to; k++) {
+                        int i = first + k * BATCHES;
+                        proposal[i] = bestCommunity(graph, i, community, members, total, totalWeight, weightTo[t], touched[t]);
+                    }
+                });
+                for (int k = 0; k < batchSize; k++) {
+                    int i = batch + k * BATCHES;
+                    int to = proposal[i], from = community[i];
+                    if (to == from) continue;
+                    double ki = graph.degree()[i];
+                    total[from] -= ki;
+                    members[from]--;
+                    total[to] += ki;
+                    members[to]++;
+                    community[i] = to;
+                    moved = true;
+                }
+            }
+            if (!moved) break;
+            double next = modularity(graph, community, total, m2);
+            if (next < modularity) {
+                // the simultaneous moves of a slice can undo each other; keep the better state
+                System.arraycopy(before, 0, community, 0, n);
+                break;
+            }
+            boolean converged = next - modularity < MIN_GAIN;
+            modularity = next;
+            if (converged) break;
+        }
+        return community;
+    }
+
+    // Gain of moving i into d, up to a factor 2 / m2: k(i, d) - resolution * total(d) * k(i) / m2, with i
+    // taken out of its own community first. Ties keep i where it is, then go to the lowest community.
+    private int bestCommunity(Graph graph, int i, int[] community, int[] members, double[] total, double m2,
+                              double[] weightTo, int[] touched) {
+        int touchedCount = 0;
+        for (int e = graph.offsets()[i]; e < graph.offsets()[i + 1]; e++) {
+            int c = community[graph.neighbors()[e]];
+            // the weights are positive, so 0 marks a community not seen yet
+            if (weightTo[c] == 0.0) touched[touchedCount++] = c;
+            weightTo[c] += graph.weights()[e];
+        }
+        int own = community[i];
+        double ki = graph.degree()[i];
+        double factor = resolution * ki / m2;
+        int best = own;
+        double bestGain = weightTo[own] - (total[own] - ki) * factor;
+        for (int t = 0; t < touchedCount; t++) {
+            int c = touched[t];
+            if (c == own) continue;
+            double gain = weightTo[c] - total[c] * factor;
+            if (gain > bestGain || (gain == bestGain && best != own && c < best)) {
+                best = c;
+                bestGain = gain;
+            }
+        }
+        for (int t = 0; t < touchedCount; t++) weightTo[touched[t]] = 0.0;
+        // two single nodes of the same slice choosing each other would only swap places
+        if (best != own && members[own] == 1 && members[best] == 1 && best > own) return own;
+        return best;
+    }
+
+    private double modularity(Graph graph, int[] community, double[] total, double m2) {
+        double inside = 0.0;
+        for (int i = 0; i < graph.size(); i++) {
+            inside += 2 * graph.self()[i];
+            for (int e = graph.offsets()[i]; e < graph.offsets()[i + 1]; e++) {
+                if (community[graph.neighbors()[e]] == community[i]) inside += graph.weights()[e];
+            }
+        }
+        double expected = 0.0;
+        for (double t : total) expected += t * t;
+        return inside / m2 - resolution * expected / (m2 * m2);
+    }
+
+    // Renumbers the communities 0..k-1 in order of first appearance and returns k
+    private static int renumber(int[] community) {
+        int[] id = new int[community.length];
+        Arrays.fill(id, -1);
+        int count = 0;
+        for (int i = 0; i < community.length; i++) {
+            int c = community[i];
+            if (id[c] < 0) id[c] = count++;
+            community[i] = id[c];
+        }
+        return count;
+    }
+
+    // One node per community; the links inside a community become its self loop. Each task builds the rows
+    // of a range of communities, which are then laid out one after the other.
+    private Graph aggregate(Graph graph, int[] community, int count) {
+        int n = graph.size();
+        int[] memberStart = new int[count + 1];
+        for (int i = 0; i < n; i++) memberStart[community[i] + 1]++;
+        for (int c = 0; c < count; c++) memberStart[c + 1] += memberStart[c];
+        int[] memberList = new int[n];
+        int[] fill = Arrays.copyOf(memberStart, count);
+        for (int i = 0; i < n; i++) memberList[fill[community[i]]++] = i;
+
+        double[] self = new double[count];
+        double[] degree = new double[count];
+        int[] rowLength = new int[count];
+        int tasks = Math.min(threadCount, count);
+        int[][] partNeighbors = new int[tasks][];
+        double[][] partWeights = new double[tasks][];
+        runParallel(tasks, t -> {
+            int from = (int) ((long) count * t / tasks), to = (int) ((long) count * (t + 1) / tasks);
+            double[] weightTo = new double[count];
+            int[] touched = new int[count];
+            int[] neighbors = new int[16];
+            double[] weights = new double[16];
+            int size = 0;
+            for (int c = from; c < to; c++) {
+                int touchedCount = 0;
+                for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+                    int i = memberList[m];
+                    self[c] += graph.self()[i];
+                    degree[c] += graph.degree()[i];
+                    for (int e = graph.offsets()[i]; e < graph.offsets()[i + 1]; e++) {
+                        int d = community[graph.neighbors()[e]];
+                        if (weightTo[d] == 0.0) touched[touchedCount++] = d;
+                        weightTo[d] += graph.weights()[e];
+                    }
+                }
+                // each inner link was seen from both ends
+                self[c] += weightTo[c] / 2;
+                weightTo[c] = 0.0;
+                Arrays.sort(touched, 0, touchedCount);
+                for (int k = 0; k < touchedCount; k++) {
+                    int d = touched[k];
+                    if (d == c) continue;
+                    if (size == neighbors.length) {
+                        neighbors = Arrays.copyOf(neighbors, size * 2);
+                        weights = Arrays.copyOf(weights, size * 2);
+                    }
+                    neighbors[size] = d;
+                    weights[size++] = weightTo[d];
+                    weightTo[d] = 0.0;
+                    rowLength[c]++;
+                }
+            }
+            partNeighbors[t] = Arrays.copyOf(neighbors, size);
+            partWeights[t] = Arrays.copyOf(weights, size);
+        });
+
+        int[] offsets = new int[count + 1];
+        for (int c = 0; c < count; c++) offsets[c + 1] = offsets[c] + rowLength[c];
+        int[] neighbors = new int[offsets[count]];
+        double[] weights = new double[offsets[count]];
+        for (int t = 0, at = 0; t < tasks; t++) {
+            System.arraycopy(partNeighbors[t], 0, neighbors, at, partNeighbors[t].length);
+            System.arraycopy(partWeights[t], 0, weights, at, partWeights[t].length);
+            at += partNeighbors[t].length;
+        }
+        return new Graph(count, offsets, neighbors, weights, self, degree);
+    }
+
+    private void runParallel(int tasks, IntConsumer task) {
+        if (pool == null || tasks <= 1) {
+            for (int t = 0; t < tasks; t++) task.accept(t);
+            return;
+        }
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < tasks; t++) {
+                int id = t;
+                futures.add(pool.submit(() -> task.accept(id)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Module identification interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -1,93 +1,567 @@
 // src/TP2/ModuleIdentifier.java
 package TP2;
 
+import Parser.ParserConfig;
+
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class ModuleIdentifier {
 
-    public record ClusterNode(Set<String> classes, ClusterNode left, ClusterNode right, double coupling) {
-        boolean isLeaf() { return left == null && right == null; }
-        List<String> leaves() {
-            if (isLeaf()) return List.of(classes.iterator().next());
-            List<String> res = new ArrayList<>();
-            res.addAll(left.leaves());
-            res.addAll(right.leaves());
-            return res;
+    // A node of a Dendrogram; the tree itself lives in the dendrogram's linkage arrays, so a node is only
+    // an id and its classes and leaves are views over them
+    public static final class ClusterNode {
+        private final Dendrogram tree;
+        private final int id;
+
+        ClusterNode(Dendrogram tree, int id) {
+            this.tree = tree;
+            this.id = id;
+        }
+
+        public Dendrogram tree() { return tree; }
+        public int id() { return id; }
+        public Set<String> classes() { return tree.classes(id); }
+        public ClusterNode left() { return isLeaf() ? null : tree.node(tree.left(id)); }
+        public ClusterNode right() { return isLeaf() ? null : tree.node(tree.right(id)); }
+        public double coupling() { return tree.coupling(id); }
+        boolean isLeaf() { return tree.isLeaf(id); }
+        List<String> leaves() { return tree.leaves(id); }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ClusterNode other && other.tree == tree && other.id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(tree) * 31 + id;
         }
     }
 
-    // BUILD FULL DENDROGRAM (NO PRUNING)
-    public static ClusterNode buildDendrogram(Map<String, Map<String, Double>> matrix, double CP) {
-        List<ClusterNode> clusters = matrix.keySet().stream()
-                .map(c -> new ClusterNode(Set.of(c), null, null, 0.0))
-                .collect(Collectors.toList());
+    // BUILD FULL DENDROGRAM (NO PRUNING, CP IS NOT USED HERE)
+    public static ClusterNode buildDendrogram(CouplingMatrix matrix, double CP) {
+        return buildDendrogram(matrix, CP, Linkage.AVERAGE);
+    }
+
+    // Each step merges the most coupled pair of clusters; ties go to the pair that comes first in class
+    // order, the merged cluster taking the place of its first half. Clusters left with no coupling at all
+    // are merged last, in class order, with a coupling of 0.
+    public static ClusterNode buildDendrogram(CouplingMatrix matrix, double CP, Linkage linkage) {
+        return cluster(matrix, linkage).root();
+    }
+
+    static Dendrogram cluster(CouplingMatrix matrix, Linkage linkage) {
+        Dendrogram.Builder tree = new Dendrogram.Builder(classNames(matrix));
+        if (matrix.size() == 0) return tree.build(linkage);
+        if (linkage == Linkage.SINGLE) {
+            buildSingleLinkage(matrix, tree);
+            return tree.build(linkage);
+        }
+
+        int[] nodes = new int[matrix.size()];
+        for (int i = 0; i < nodes.length; i++) nodes[i] = i;
+        long pairs = (long) matrix.size() * (matrix.size() - 1) / 2;
+        long heapBudget = Runtime.getRuntime().maxMemory() / 2;
+        if (!exactTableFits(pairs, heapBudget)) {
+            try (WorkspaceTable table = new WorkspaceTable(matrix, linkage,
+                    SimilarityWorkspace.allocate(pairs, heapBudget, ParserConfig.HAC_SPILL_DIRECTORY))) {
+                mergeGreedily(table, nodes, tree);
+            }
+            return tree.build(linkage);
+        }
+
+        PairTable table = switch (linkage) {
+            case AVERAGE -> new AverageTable(matrix);
+            case COMPLETE -> new CompleteTable(matrix);
+            case WARD -> new WardTable(matrix);
+            case SINGLE -> throw new IllegalStateException();
+        };
+        mergeGreedily(table, nodes, tree);
+        return tree.build(linkage);
+    }
+
+    // The exact tables are arrays of 8-byte values indexed by int
+    static boolean exactTableFits(long pairs, long heapBudget) {
+        return pairs <= Integer.MAX_VALUE - 8 && pairs * Long.BYTES <= heapBudget;
+    }
+
+    static String[] classNames(CouplingMatrix matrix) {
+        String[] names = new String[matrix.size()];
+        for (int i = 0; i < names.length; i++) names[i] = matrix.className(i);
+        return names;
+    }
+
+    // Instead of rescanning every pair, the pair table is updated by Lance-Williams after a merge and each
+    // cluster keeps its best partner among the clusters after it; only the rows whose best partner was
+    // merged are scanned again, which is O(n^2) in practice. nodes holds the dendrogram node of each slot
+    // and is updated as clusters merge.
+    // The live slots are kept packed in ascending order and every scan is a counted loop over them that
+    // compares the table's double keys, falling back to the exact comparison only when two keys are equal.
+    static void mergeGreedily(PairTable table, int[] nodes, Dendrogram.Builder tree) {
+        mergeGreedily(table, nodes, tree, false);
+    }
+
+    // With coupledOnly, stops once no pair is coupled above 0 and returns the slots still live, in order;
+    // with average and complete linkage those would only be merged at 0, each into the first one
+    static int[] mergeGreedily(PairTable table, int[] nodes, Dendrogram.Builder tree, boolean coupledOnly) {
+        int n = table.n;
+        int[] live = new int[n];
+        int[] best = new int[n];
+        double[] bestKey = new double[n];
+        for (int i = 0; i < n; i++) live[i] = i;
+        int count = n;
+        for (int i = 0; i < n; i++) setBest(table, i, i + 1, live, count, best, bestKey);
 
         // MERGE UNTIL ONLY 1 CLUSTER (full tree)
-        while (clusters.size() > 1) {
-            double best = -1; int iBest = -1, jBest = -1;
-            for (int i = 0; i < clusters.size(); i++) {
-                for (int j = i + 1; j < clusters.size(); j++) {
-                    double coup = averageCoupling(clusters.get(i), clusters.get(j), matrix);
-                    if (coup > best) {
-                        best = coup;
-                        iBest = i;
-                        jBest = j;
+        for (int merges = 1; merges < n; merges++) {
+            // the greatest key first, then the first exactly most coupled pair among those reaching it
+            double top = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < count; t++) {
+                double key = bestKey[live[t]];
+                top = key > top ? key : top;
+            }
+            if (coupledOnly && top <= 0) break;
+            int i = -1;
+            for (int t = 0; t < count; t++) {
+                int r = live[t];
+                if (bestKey[r] == top && best[r] >= 0 && (i < 0
+                        || (!table.keyIsExact(top) && table.moreCoupled(r, best[r], i, best[i])))) {
+                    i = r;
+                }
+            }
+            int j = best[i];
+
+            nodes[i] = tree.merge(nodes[i], nodes[j], table.coupling(i, j));
+
+            table.mergeAll(i, j, live, count);
+            table.mergeSizes(i, j);
+            int at = Arrays.binarySearch(live, 0, count, j);
+            System.arraycopy(live, at + 1, live, at, --count - at);
+
+            for (int t = 0; t < count && live[t] < j; t++) {
+                int k = live[t];
+                if (k == i || best[k] == i || best[k] == j) {
+                    setBest(table, k, t + 1, live, count, best, bestKey);
+                } else if (k < i) {
+                    long slot = table.slot(k, i);
+                    double key = table.key(slot, k, i);
+                    boolean tie = key == bestKey[k] && (table.keyIsExact(key) ? i < best[k]
+                            : table.moreCoupled(k, i, k, best[k]) || (!table.moreCoupled(k, best[k], k, i) && i < best[k]));
+                    if (key > bestKey[k] || tie) {
+                        best[k] = i;
+                        bestKey[k] = key;
                     }
                 }
             }
-            if (iBest == -1) break;
+        }
+        return Arrays.copyOf(live, count);
+    }
+
+    // The first most coupled of live[from..count) becomes the best partner of i, or -1 when there is none
+    private static void setBest(PairTable table, int i, int from, int[] live, int count, int[] best, double[] bestKey) {
+        long row = table.rowStart[i] - i - 1;
+        int b = -1;
+        double top = Double.NEGATIVE_INFINITY;
+        for (int t = from; t < count; t++) {
+            int k = live[t];
+            double key = table.key(row + k, i, k);
+            if (key > top || (key == top && b >= 0 && !table.keyIsExact(key) && table.moreCoupled(i, k, i, b))) {
+                b = k;
+                top = key;
+            }
+        }
+        best[i] = b;
+        bestKey[i] = top;
+    }
+
+    // Slot of the pair (i, k), i < k, in the upper triangle stored row by row
+    static int pairIndex(int i, int k, int n) {
+        return (int) pairSlot(i, k, n);
+    }
+
+    static long pairSlot(int i, int k, int n) {
+        return (long) i * (2L * n - i - 1) / 2 + (k - i - 1);
+    }
+
+    // Linkage values of the live cluster pairs, indexed by the slot of each cluster's first class
+    abstract static class PairTable {
+        final int n;
+        final int[] size;
+        final long totalCalls;
+        // slot of (i, i + 1), the start of row i
+        final long[] rowStart;
+
+        PairTable(int[] size, long totalCalls) {
+            this.n = size.length;
+            this.size = size;
+            this.totalCalls = totalCalls;
+            rowStart = new long[n];
+            for (int i = 0; i < n; i++) rowStart[i] = pairSlot(i, i + 1, n);
+        }
+
+        static int[] singletons(int n) {
+            int[] size = new int[n];
+            Arrays.fill(size, 1);
+            return size;
+        }
+
+        int pair(int a, int b) {
+            return (int) slot(a, b);
+        }
+
+        long slot(int a, int b) {
+            return a < b ? rowStart[a] + (b - a - 1) : rowStart[b] + (a - b - 1);
+        }
+
+        static int pairCount(int n) {
+            return Math.toIntExact((long) n * (n - 1) / 2);
+        }
+
+        // Whether (a, b) is strictly more coupled than (c, d)
+        abstract boolean moreCoupled(int a, int b, int c, int d);
+
+        // Coupling reported on the node merging i and j
+        abstract double coupling(int i, int j);
+
+        // Orders pairs like moreCoupled wherever their keys differ; pairs with equal keys are left to
+        // moreCoupled. slot is that of (a, b).
+        abstract double key(long slot, int a, int b);
+
+        // Whether pairs sharing this key are equally coupled, so moreCoupled need not be asked
+        boolean keyIsExact(double key) {
+            return true;
+        }
+
+        // Folds the pair (j, k), at slot jk, into (i, k), at slot ik, once i and j are merged; sizes are
+        // still those before the merge
+        abstract void merge(long ik, long jk, int i, int j, int k);
+
+        // merge for every live k, i < j, walking the columns above i, then row i against column j, then
+        // rows i and j side by side
+        final void mergeAll(int i, int j, int[] live, int count) {
+            long rowI = rowStart[i] - i - 1, rowJ = rowStart[j] - j - 1;
+            int t = 0;
+            for (; live[t] < i; t++) {
+                int k = live[t];
+                long rowK = rowStart[k] - k - 1;
+                merge(rowK + i, rowK + j, i, j, k);
+            }
+            for (t++; live[t] < j; t++) {
+                int k = live[t];
+                merge(rowI + k, rowStart[k] - k - 1 + j, i, j, k);
+            }
+            if (2 * (count - t) > n - j) {
+                // mostly live: rows i and j are combined whole, dead slots included since nothing reads them
+                mergeRows(rowI, rowJ, i, j, j + 1, n);
+                return;
+            }
+            for (t++; t < count; t++) {
+                int k = live[t];
+                merge(rowI + k, rowJ + k, i, j, k);
+            }
+        }
+
+        // merge for every k in [from, to), where (i, k) is at rowI + k and (j, k) at rowJ + k
+        void mergeRows(long rowI, long rowJ, int i, int j, int from, int to) {
+            for (int k = from; k < to; k++) merge(rowI + k, rowJ + k, i, j, k);
+        }
+
+        void mergeSizes(int i, int j) {
+            size[i] += size[j];
+        }
+    }
+
+    // Link sums over the class pairs; sum(k, i+j) = sum(k, i) + sum(k, j), and averages are compared
+    // as exact fractions of the sums
+    static final class AverageTable extends PairTable {
+        private final long[] links;
+
+        AverageTable(CouplingMatrix matrix) {
+            this(linkTable(matrix), singletons(matrix.size()), matrix.totalCalls());
+        }
+
+        // links holds the link sums between clusters of the given sizes
+        AverageTable(long[] links, int[] size, long totalCalls) {
+            super(size, totalCalls);
+            this.links = links;
+        }
 
-            Set<String> merged = new HashSet<>(clusters.get(iBest).classes);
-            merged.addAll(clusters.get(jBest).classes);
-            ClusterNode newNode = new ClusterNode(merged, clusters.get(iBest), clusters.get(jBest), best);
+        @Override
+        boolean moreCoupled(int a, int b, int c, int d) {
+            long l1 = links[pair(a, b)], s1 = (long) size[a] * size[b];
+            long l2 = links[pair(c, d)], s2 = (long) size[c] * size[d];
+            // l1 / s1 > l2 / s2, cross-multiplied in 128 bits
+            long high1 = Math.multiplyHigh(l1, s2), high2 = Math.multiplyHigh(l2, s1);
+            if (high1 != high2) return high1 > high2;
+            return Long.compareUnsigned(l1 * s2, l2 * s1) > 0;
+        }
+
+        @Override
+        double coupling(int i, int j) {
+            return (double) links[pair(i, j)] / totalCalls / ((double) size[i] * size[j]);
+        }
+
+        // one correctly rounded division of exact operands, so it cannot invert two different averages
+        // while the link sums stay below 2^53
+        @Override
+        double key(long slot, int a, int b) {
+            return (double) links[(int) slot] / ((double) size[a] * size[b]);
+        }
 
-            clusters.set(iBest, newNode);
-            clusters.remove(jBest);
+        // only uncoupled pairs are sure to be tied
+        @Override
+        boolean keyIsExact(double key) {
+            return key == 0;
         }
 
-        return clusters.isEmpty() ? null : clusters.get(0);
+        @Override
+        void merge(long ik, long jk, int i, int j, int k) {
+            links[(int) ik] += links[(int) jk];
+        }
+
+        @Override
+        void mergeRows(long rowI, long rowJ, int i, int j, int from, int to) {
+            int a = (int) rowI, b = (int) rowJ;
+            for (int k = from; k < to; k++) links[a + k] += links[b + k];
+        }
     }
 
-    private static double averageCoupling(ClusterNode a, ClusterNode b, Map<String, Map<String, Double>> m) {
-        double sum = 0;
-        int count = 0;
-        for (String x : a.classes) {
-            for (String y : b.classes) {
-                sum += m.getOrDefault(x, Map.of()).getOrDefault(y, 0.0);
-                count++;
+    // Weakest class pair; min(k, i+j) = min(min(k, i), min(k, j)) on the integer link counts
+    static final class CompleteTable extends PairTable {
+        private final long[] links;
+
+        CompleteTable(CouplingMatrix matrix) {
+            this(linkTable(matrix), singletons(matrix.size()), matrix.totalCalls());
+        }
+
+        // links holds the weakest class pair between clusters, 0 unless every pair is coupled
+        CompleteTable(long[] links, int[] size, long totalCalls) {
+            super(size, totalCalls);
+            this.links = links;
+        }
+
+        @Override
+        boolean moreCoupled(int a, int b, int c, int d) {
+            return links[pair(a, b)] > links[pair(c, d)];
+        }
+
+        @Override
+        double coupling(int i, int j) {
+            return (double) links[pair(i, j)] / totalCalls;
+        }
+
+        @Override
+        double key(long slot, int a, int b) {
+            return links[(int) slot];
+        }
+
+        @Override
+        void merge(long ik, long jk, int i, int j, int k) {
+            links[(int) ik] = Math.min(links[(int) ik], links[(int) jk]);
+        }
+
+        @Override
+        void mergeRows(long rowI, long rowJ, int i, int j, int from, int to) {
+            int a = (int) rowI, b = (int) rowJ;
+            for (int k = from; k < to; k++) links[a + k] = Math.min(links[a + k], links[b + k]);
+        }
+    }
+
+    // Ward's Lance-Williams update on d = 1 - coupling. Its coefficients add up to 1, so it can be applied
+    // to the couplings directly: s(k, i+j) = ((nk + ni) s(k, i) + (nk + nj) s(k, j) - nk s(i, j)) / (nk + ni + nj).
+    // The reported coupling is 1 - the merge distance and may drop below 0 for large clusters.
+    static final class WardTable extends PairTable {
+        private final double[] similarity;
+
+        WardTable(CouplingMatrix matrix) {
+            this(new double[pairCount(matrix.size())], singletons(matrix.size()), matrix.totalCalls());
+            for (int i = 0; i < n; i++) {
+                for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                    int k = matrix.neighbor(e);
+                    if (k > i) similarity[pairIndex(i, k, n)] = matrix.coupling(e);
+                }
+            }
+        }
+
+        // similarity holds 1 - the Ward distance between clusters of the given sizes
+        WardTable(double[] similarity, int[] size, long totalCalls) {
+            super(size, totalCalls);
+            this.similarity = similarity;
+        }
+
+        @Override
+        boolean moreCoupled(int a, int b, int c, int d) {
+            return similarity[pair(a, b)] > similarity[pair(c, d)];
+        }
+
+        @Override
+        double coupling(int i, int j) {
+            return similarity[pair(i, j)];
+        }
+
+        @Override
+        double key(long slot, int a, int b) {
+            return similarity[(int) slot];
+        }
+
+        @Override
+        void merge(long ik, long jk, int i, int j, int k) {
+            double ni = size[i], nj = size[j], nk = size[k];
+            similarity[(int) ik] = ((nk + ni) * similarity[(int) ik] + (nk + nj) * similarity[(int) jk]
+                    - nk * similarity[pair(i, j)]) / (nk + ni + nj);
+        }
+
+        @Override
+        void mergeRows(long rowI, long rowJ, int i, int j, int from, int to) {
+            int a = (int) rowI, b = (int) rowJ;
+            double ni = size[i], nj = size[j], sij = similarity[pair(i, j)];
+            for (int k = from; k < to; k++) {
+                double nk = size[k];
+                similarity[a + k] = ((nk + ni) * similarity[a + k] + (nk + nj) * similarity[b + k] - nk * sij)
+                        / (nk + ni + nj);
             }
         }
-        return count > 0 ? sum / count : 0.0;
     }
 
-    // RETURN ALL LEAF CLUSTERS (ONE CLASS PER MODULE)
-    public static List<Set<String>> identifyModules(Map<String, Map<String, Double>> matrix, double CP) {
-        ClusterNode root = buildDendrogram(matrix, CP);
-        if (root == null) return List.of();
+    // The same linkages in float, kept in a SimilarityWorkspace, for class counts whose exact table does not
+    // fit in half the heap. Average couplings are combined weighted by cluster size, complete takes the
+    // minimum and Ward its update above; ties the exact tables break on the last bits may go the other way.
+    static final class WorkspaceTable extends PairTable implements AutoCloseable {
+        private final Linkage linkage;
+        private final SimilarityWorkspace values;
+
+        WorkspaceTable(CouplingMatrix matrix, Linkage linkage, SimilarityWorkspace values) {
+            this(singletons(matrix.size()), matrix.totalCalls(), linkage, values);
+            for (int i = 0; i < n; i++) {
+                for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                    int k = matrix.neighbor(e);
+                    if (k > i) values.set(pairSlot(i, k, n), (float) matrix.coupling(e));
+                }
+            }
+        }
+
+        // Clusters of the given sizes, all at 0 until set
+        WorkspaceTable(int[] size, long totalCalls, Linkage linkage, SimilarityWorkspace values) {
+            super(size, totalCalls);
+            this.linkage = linkage;
+            this.values = values;
+        }
+
+        void set(int a, int b, double coupling) {
+            values.set(slot(a, b), (float) coupling);
+        }
+
+        @Override
+        boolean moreCoupled(int a, int b, int c, int d) {
+            return values.get(slot(a, b)) > values.get(slot(c, d));
+        }
+
+        @Override
+        double coupling(int i, int j) {
+            return values.get(slot(i, j));
+        }
+
+        @Override
+        double key(long slot, int a, int b) {
+            return values.get(slot);
+        }
+
+        @Override
+        void merge(long ik, long jk, int i, int j, int k) {
+            double sik = values.get(ik), sjk = values.get(jk);
+            double ni = size[i], nj = size[j], nk = size[k];
+            double merged = switch (linkage) {
+                case AVERAGE -> (ni * sik + nj * sjk) / (ni + nj);
+                case COMPLETE -> Math.min(sik, sjk);
+                case WARD -> ((nk + ni) * sik + (nk + nj) * sjk - nk * values.get(slot(i, j))) / (nk + ni + nj);
+                case SINGLE -> throw new IllegalStateException();
+            };
+            values.set(ik, (float) merged);
+        }
+
+        @Override
+        public void close() {
+            values.close();
+        }
+    }
 
-        List<Set<String>> modules = new ArrayList<>();
-        collectProjectClasses(root, modules);
-        return modules;
+    private static long[] linkTable(CouplingMatrix matrix) {
+        int n = matrix.size();
+        long[] links = new long[PairTable.pairCount(n)];
+        for (int i = 0; i < n; i++) {
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                int k = matrix.neighbor(e);
+                if (k > i) links[pairIndex(i, k, n)] = matrix.links(e);
+            }
+        }
+        return links;
     }
 
-    private static void collectProjectClasses(ClusterNode node, List<Set<String>> modules) {
-        if (node.isLeaf()) {
-            modules.add(node.classes);
-        } else {
-            collectProjectClasses(node.left, modules);
-            collectProjectClasses(node.right, modules);
+    // Single linkage is Kruskal's algorithm on the coupled pairs, strongest first (ties in class order):
+    // each pair joining two clusters is a merge. O(E log E) on the sparse matrix, with no pair table.
+    private static void buildSingleLinkage(CouplingMatrix matrix, Dendrogram.Builder tree) {
+        int n = matrix.size();
+        int pairs = 0;
+        for (int i = 0; i < n; i++) {
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                if (matrix.neighbor(e) > i) pairs++;
+            }
+        }
+        // strongest first, then in (i, k) order: the entries are enumerated in that order already
+        int[] pairEntry = new int[pairs];
+        long[] order = new long[pairs];
+        for (int i = 0, p = 0; i < n; i++) {
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                if (matrix.neighbor(e) <= i) continue;
+                pairEntry[p] = e;
+                order[p] = ((long) (Integer.MAX_VALUE - matrix.links(e)) << 32) | p;
+                p++;
+            }
+        }
+        Arrays.sort(order);
+
+        int[] parent = new int[n];
+        int[] nodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            nodes[i] = i;
+        }
+        int[] rowOf = new int[matrix.entryCount()];
+        for (int i = 0; i < n; i++) {
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) rowOf[e] = i;
+        }
+        for (long key : order) {
+            int e = pairEntry[(int) key];
+            // the root of a cluster is its first class, so the merged cluster keeps the first slot
+            int a = find(parent, rowOf[e]), b = find(parent, matrix.neighbor(e));
+            if (a == b) continue;
+            int left = Math.min(a, b), right = Math.max(a, b);
+            nodes[left] = tree.merge(nodes[left], nodes[right], matrix.coupling(e));
+            parent[right] = left;
+        }
+
+        int root = -1;
+        for (int i = 0; i < n; i++) {
+            if (parent[i] != i) continue;
+            root = root < 0 ? nodes[i] : tree.merge(root, nodes[i], 0.0);
         }
     }
 
-    private static List<Set<String>> collectLeaves(ClusterNode node) {
-        List<Set<String>> modules = new ArrayList<>();
-        if (node.isLeaf()) {
-            modules.add(node.classes);
-        } else {
-            modules.addAll(collectLeaves(node.left));
-            modules.addAll(collectLeaves(node.right));
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
         }
-        return modules;
+        return i;
+    }
+
+    // MODULES = DENDROGRAM CUT AT CP (see Dendrogram.cutAt); build a Dendrogram to try several thresholds
+    public static List<Set<String>> identifyModules(CouplingMatrix matrix, double CP) {
+        return identifyModules(matrix, CP, Linkage.AVERAGE);
+    }
+
+    public static List<Set<String>> identifyModules(CouplingMatrix matrix, double CP, Linkage linkage) {
+        return Dendrogram.build(matrix, linkage).cutAt(CP);
     }
 }
\ No newline at end of file
@@ -0,0 +1,456 @@
+package TP2;
+
+import Parser.Cancellation;
+import Parser.ParserConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Divide-and-conquer HAC: the classes are split into groups, each group is clustered on its own, the groups
+// in parallel, and a second HAC pass merges the modules the groups produced: their subtrees with a coupling
+// above 0, or for Ward, whose similarities soon drop below 0, the whole group. Each quadratic sub-problem is
+// bounded by the size of a group, and the second pass starts from the modules instead of the classes, leaving
+// out those coupled to no other module. When its table still does not fit in half the heap, it runs on the
+// float workspace as a single run would.
+//
+// The second pass starts from the exact linkage between the group modules: link sums for average, the
+// weakest class pair for complete, and for Ward 2 na nb / (na + nb) (D(A, B) - D(A, A) / 2 - D(B, B) / 2)
+// on the mean distances D, which is what Lance-Williams reaches from single classes. With COMPONENT groups,
+// average and complete linkage give the same tree as a single HAC run, since no merge crosses components
+// before the coupling reaches 0. Single linkage is already sparse and always runs on the whole matrix.
+public class PartitionedClustering {
+
+    public enum Partition {
+        // classes of the same package
+        PACKAGE("Package"),
+        // classes connected through coupling
+        COMPONENT("Component");
+
+        private final String label;
+
+        Partition(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static Dendrogram build(CouplingMatrix matrix, Linkage linkage, Partition partition) {
+        return build(matrix, linkage, partition, ParserConfig.THREAD_COUNT);
+    }
+
+    public static ModuleIdentifier.ClusterNode buildDendrogram(CouplingMatrix matrix, Linkage linkage, Partition partition) {
+        return build(matrix, linkage, partition).root();
+    }
+
+    public static Dendrogram build(CouplingMatrix matrix, Linkage linkage, Partition partition, int threadCount) {
+        int n = matrix.size();
+        if (n == 0 || linkage == Linkage.SINGLE) return ModuleIdentifier.cluster(matrix, linkage);
+
+        int[] group = partition == Partition.PACKAGE ? packageGroups(matrix) : componentGroups(matrix);
+        int groupCount = 0;
+        for (int g : group) groupCount = Math.max(groupCount, g + 1);
+        int[] memberStart = new int[groupCount + 1];
+        for (int i = 0; i < n; i++) memberStart[group[i] + 1]++;
+        for (int g = 0; g < groupCount; g++) memberStart[g + 1] += memberStart[g];
+        // members of each group in class order, and the index of each class within its group
+        int[] members = new int[n];
+        int[] local = new int[n];
+        int[] fill = Arrays.copyOf(memberStart, groupCount);
+        for (int i = 0; i < n; i++) {
+            local[i] = fill[group[i]] - memberStart[group[i]];
+            members[fill[group[i]]++] = i;
+        }
+
+        Dendrogram[] groupTrees = clusterGroups(matrix, linkage, group, members, memberStart, local, threadCount);
+
+        // Replay the coupled part of each group tree into the full tree, in group order
+        Dendrogram.Builder tree = new Dendrogram.Builder(ModuleIdentifier.classNames(matrix));
+        int[] moduleNode = new int[n];
+        int[] moduleOf = new int[n];
+        int moduleCount = 0;
+        for (int g = 0; g < groupCount; g++) {
+            int first = memberStart[g];
+            Dendrogram sub = groupTrees[g];
+            if (sub == null) {
+                moduleOf[members[first]] = moduleCount;
+                moduleNode[moduleCount++] = members[first];
+                continue;
+            }
+            int[] roots = sub.moduleRoots(linkage == Linkage.WARD ? Double.NEGATIVE_INFINITY : 0.0);
+            int[] global = new int[sub.nodeCount()];
+            for (int l = 0; l < sub.leafCount(); l++) global[l] = members[first + l];
+            boolean[] kept = keptNodes(sub, roots);
+            for (int root : roots) {
+                for (int p = sub.firstLeaf(root); p < sub.firstLeaf(root) + sub.size(root); p++) {
+                    moduleOf[members[first + sub.leafAt(p)]] = moduleCount;
+                }
+                moduleCount++;
+            }
+            // merges are numbered after the leaves and children always come first
+            for (int node = sub.leafCount(); node < sub.nodeCount(); node++) {
+                if (!kept[node]) continue;
+                global[node] = tree.merge(global[sub.left(node)], global[sub.right(node)], sub.coupling(node));
+            }
+            for (int r = 0; r < roots.length; r++) moduleNode[moduleCount - roots.length + r] = global[roots[r]];
+        }
+
+        // The second pass orders the modules by their first class, as the classes are in a single run
+        int[] slot = new int[moduleCount];
+        Arrays.fill(slot, -1);
+        int[] nodes = new int[moduleCount];
+        int[] size = new int[moduleCount];
+        for (int i = 0, next = 0; i < n; i++) {
+            int m = moduleOf[i];
+            if (slot[m] < 0) {
+                slot[m] = next;
+                nodes[next++] = moduleNode[m];
+            }
+            moduleOf[i] = slot[m];
+            size[moduleOf[i]]++;
+        }
+
+        // With average and complete linkage a module coupled to no other stays at 0 with every cluster, so it
+        // only takes part in the final merges at 0. Only the coupled modules go through the pair table; its
+        // size is quadratic in their count.
+        ModuleLinks between = moduleLinks(matrix, moduleOf, moduleCount);
+        boolean[] coupled = new boolean[moduleCount];
+        for (int p = 0; p < between.count; p++) {
+            int a = between.first[p], b = between.second[p];
+            if (linkage == Linkage.COMPLETE && between.classPairs[p] != (long) size[a] * size[b]) continue;
+            coupled[a] = true;
+            coupled[b] = true;
+        }
+        int[] second = new int[moduleCount];
+        int coupledCount = 0;
+        for (int t = 0; t < moduleCount; t++) {
+            second[t] = linkage == Linkage.WARD || coupled[t] ? coupledCount++ : -1;
+        }
+        int[] secondSize = new int[coupledCount];
+        int[] secondNodes = new int[coupledCount];
+        for (int t = 0; t < moduleCount; t++) {
+            if (second[t] < 0) continue;
+            secondSize[second[t]] = size[t];
+            secondNodes[second[t]] = nodes[t];
+        }
+        int[] left = mergeModules(between, linkage, second, secondSize, secondNodes, matrix.totalCalls(), tree);
+
+        // the merges at 0, each cluster left joining the first one in slot order as in a single run
+        boolean[] live = new boolean[coupledCount];
+        for (int s : left) live[s] = true;
+        int root = -1;
+        for (int t = 0; t < moduleCount; t++) {
+            int node;
+            if (second[t] < 0) {
+                node = nodes[t];
+            } else if (live[second[t]]) {
+                node = secondNodes[second[t]];
+            } else {
+                continue;
+            }
+            root = root < 0 ? node : tree.merge(root, node, 0.0);
+        }
+        return tree.build(linkage);
+    }
+
+    // The nodes under the given roots; the subtree of a root is the next 2 * size - 1 nodes of the preorder
+    private static boolean[] keptNodes(Dendrogram sub, int[] roots) {
+        int[] position = new int[sub.nodeCount()];
+        for (int p = 0; p < position.length; p++) position[sub.preorder(p)] = p;
+        boolean[] kept = new boolean[sub.nodeCount()];
+        for (int root : roots) {
+            for (int p = position[root]; p < position[root] + 2 * sub.size(root) - 1; p++) kept[sub.preorder(p)] = true;
+        }
+        return kept;
+    }
+
+    // Largest groups first, so a big group does not start last
+    private static Dendrogram[] clusterGroups(CouplingMatrix matrix, Linkage linkage, int[] group, int[] members,
+                                              int[] memberStart, int[] local, int threadCount) {
+        int groupCount = memberStart.length - 1;
+        Dendrogram[] trees = new Dendrogram[groupCount];
+        List<Integer> order = new ArrayList<>();
+        for (int g = 0; g < groupCount; g++) {
+            if (memberStart[g + 1] - memberStart[g] > 1) order.add(g);
+        }
+        order.sort((a, b) -> Integer.compare(memberStart[b + 1] - memberStart[b], memberStart[a + 1] - memberStart[a]));
+        if (threadCount <= 1 || order.size() <= 1) {
+            for (int g : order) trees[g] = ModuleIdentifier.cluster(subMatrix(matrix, g, group, members, memberStart, local), linkage);
+            return trees;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threadCount, order.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int g : order) {
+                futures.add(pool.submit(() -> {
+                    trees[g] = ModuleIdentifier.cluster(subMatrix(matrix, g, group, members, memberStart, local), linkage);
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Clustering interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            Cancellation.shutdownAndWait(pool);
+        }
+        return trees;
+    }
+
+    // The couplings inside group g, still relative to the calls of the whole project
+    private static CouplingMatrix subMatrix(CouplingMatrix matrix, int g, int[] group, int[] members,
+                                            int[] memberStart, int[] local) {
+        int size = memberStart[g + 1] - memberStart[g];
+        String[] classes = new String[size];
+        int[] offsets = new int[size + 1];
+        for (int l = 0; l < size; l++) {
+            int i = members[memberStart[g] + l];
+            classes[l] = matrix.className(i);
+            int entries = 0;
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                if (group[matrix.neighbor(e)] == g) entries++;
+            }
+            offsets[l + 1] = offsets[l] + entries;
+        }
+        int[] neighbors = new int[offsets[size]];
+        int[] links = new int[offsets[size]];
+        for (int l = 0, at = 0; l < size; l++) {
+            int i = members[memberStart[g] + l];
+            // local order follows class order, so the rows stay sorted
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                int k = matrix.neighbor(e);
+                if (group[k] != g) continue;
+                neighbors[at] = local[k];
+                links[at++] = matrix.links(e);
+            }
+        }
+        return new CouplingMatrix(classes, offsets, neighbors, links, matrix.totalCalls());
+    }
+
+    // The second pass over the coupled modules, on an exact table while it fits in half the heap and otherwise
+    // on the float workspace ModuleIdentifier.cluster spills to disk; returns the slots left at the end
+    private static int[] mergeModules(ModuleLinks between, Linkage linkage, int[] second, int[] size, int[] nodes,
+                                      long totalCalls, Dendrogram.Builder tree) {
+        int m = size.length;
+        long pairs = (long) m * (m - 1) / 2;
+        long heapBudget = Runtime.getRuntime().maxMemory() / 2;
+        boolean coupledOnly = linkage != Linkage.WARD;
+        if (ModuleIdentifier.exactTableFits(pairs, heapBudget)) {
+            return ModuleIdentifier.mergeGreedily(moduleTable(between, linkage, second, size, totalCalls), nodes, tree, coupledOnly);
+        }
+        try (ModuleIdentifier.WorkspaceTable table = new ModuleIdentifier.WorkspaceTable(size, totalCalls, linkage,
+                SimilarityWorkspace.allocate(pairs, heapBudget, ParserConfig.HAC_SPILL_DIRECTORY))) {
+            if (linkage == Linkage.WARD) {
+                double[] within = within(between, size, totalCalls);
+                for (int a = 0, p = 0; a < m; a++) {
+                    for (int b = a + 1; b < m; b++) {
+                        long links = p < between.count && between.first[p] == a && between.second[p] == b ? between.links[p++] : 0;
+                        table.set(a, b, wardSimilarity(links, size[a], size[b], within[a], within[b], totalCalls));
+                    }
+                }
+            } else {
+                for (int p = 0; p < between.count; p++) {
+                    int a = second[between.first[p]], b = second[between.second[p]];
+                    if (a < 0 || b < 0) continue;
+                    double na = size[a], nb = size[b];
+                    table.set(a, b, linkage == Linkage.AVERAGE ? (double) between.links[p] / totalCalls / (na * nb)
+                            : between.classPairs[p] == (long) size[a] * size[b] ? (double) between.weakest[p] / totalCalls : 0);
+                }
+            }
+            return ModuleIdentifier.mergeGreedily(table, nodes, tree, coupledOnly);
+        }
+    }
+
+    private static ModuleIdentifier.PairTable moduleTable(ModuleLinks between, Linkage linkage, int[] second, int[] size,
+                                                          long totalCalls) {
+        int m = size.length;
+        switch (linkage) {
+            case AVERAGE:
+            case COMPLETE:
+                long[] links = new long[ModuleIdentifier.PairTable.pairCount(m)];
+                for (int p = 0; p < between.count; p++) {
+                    int a = second[between.first[p]], b = second[between.second[p]];
+                    if (a < 0 || b < 0) continue;
+                    // for complete linkage the weakest class pair, when every pair is coupled
+                    links[ModuleIdentifier.pairIndex(a, b, m)] = linkage == Linkage.AVERAGE ? between.links[p]
+                            : between.classPairs[p] == (long) size[a] * size[b] ? between.weakest[p] : 0;
+                }
+                return linkage == Linkage.AVERAGE ? new ModuleIdentifier.AverageTable(links, size, totalCalls)
+                        : new ModuleIdentifier.CompleteTable(links, size, totalCalls);
+            case WARD:
+                // every module takes part, so module and second pass indexes are the same
+                double[] similarity = new double[ModuleIdentifier.PairTable.pairCount(m)];
+                double[] within = within(between, size, totalCalls);
+                for (int a = 0, p = 0; a < m; a++) {
+                    for (int b = a + 1; b < m; b++) {
+                        long pairLinks = p < between.count && between.first[p] == a && between.second[p] == b ? between.links[p++] : 0;
+                        similarity[ModuleIdentifier.pairIndex(a, b, m)] = wardSimilarity(pairLinks, size[a], size[b],
+                                within[a], within[b], totalCalls);
+                    }
+                }
+                return new ModuleIdentifier.WardTable(similarity, size, totalCalls);
+            default:
+                throw new IllegalArgumentException("No pair table for " + linkage);
+        }
+    }
+
+    // Mean distance 1 - coupling over all ordered pairs of each module, a class to itself being 0
+    private static double[] within(ModuleLinks between, int[] size, long totalCalls) {
+        double[] within = new double[size.length];
+        for (int a = 0; a < size.length; a++) {
+            double na = size[a];
+            within[a] = (na * (na - 1) - 2.0 * between.inner[a] / totalCalls) / (na * na);
+        }
+        return within;
+    }
+
+    private static double wardSimilarity(long links, int sizeA, int sizeB, double withinA, double withinB, long totalCalls) {
+        double na = sizeA, nb = sizeB;
+        double between = 1.0 - (double) links / totalCalls / (na * nb);
+        return 1.0 - 2 * na * nb / (na + nb) * (between - withinA / 2 - withinB / 2);
+    }
+
+    // Links between the modules of the second pass, one entry per module pair a < b with classes coupled
+    // across it, in pair order, and the links inside each module; sparse like the coupling matrix
+    private static final class ModuleLinks {
+        final long[] inner;
+        final int[] first;
+        final int[] second;
+        final long[] links;
+        final long[] classPairs;
+        final int[] weakest;
+        int count;
+
+        ModuleLinks(int moduleCount, int capacity) {
+            inner = new long[moduleCount];
+            first = new int[capacity];
+            second = new int[capacity];
+            links = new long[capacity];
+            classPairs = new long[capacity];
+            weakest = new int[capacity];
+        }
+    }
+
+    private static ModuleLinks moduleLinks(CouplingMatrix matrix, int[] moduleOf, int m) {
+        // the class pairs across modules, bucketed by their first module
+        int[] bucketStart = new int[m + 1];
+        long[] inner = new long[m];
+        for (int i = 0; i < matrix.size(); i++) {
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                int k = matrix.neighbor(e);
+                if (k <= i) continue;
+                int a = moduleOf[i], b = moduleOf[k];
+                if (a == b) {
+                    inner[a] += matrix.links(e);
+                } else {
+                    bucketStart[Math.min(a, b) + 1]++;
+                }
+            }
+        }
+        for (int a = 0; a < m; a++) bucketStart[a + 1] += bucketStart[a];
+        int[] other = new int[bucketStart[m]];
+        int[] classLinks = new int[bucketStart[m]];
+        int[] fill = Arrays.copyOf(bucketStart, m);
+        for (int i = 0; i < matrix.size(); i++) {
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                int k = matrix.neighbor(e);
+                int a = moduleOf[i], b = moduleOf[k];
+                if (k <= i || a == b) continue;
+                int at = fill[Math.min(a, b)]++;
+                other[at] = Math.max(a, b);
+                classLinks[at] = matrix.links(e);
+            }
+        }
+
+        // each bucket folded on a dense row over the second modules, cleared again as it is read
+        ModuleLinks between = new ModuleLinks(m, bucketStart[m]);
+        System.arraycopy(inner, 0, between.inner, 0, m);
+        long[] sum = new long[m];
+        long[] pairs = new long[m];
+        int[] weakest = new int[m];
+        int[] touched = new int[m];
+        for (int a = 0; a < m; a++) {
+            int t = 0;
+            for (int x = bucketStart[a]; x < bucketStart[a + 1]; x++) {
+                int b = other[x];
+                if (pairs[b]++ == 0) {
+                    touched[t++] = b;
+                    weakest[b] = classLinks[x];
+                }
+                sum[b] += classLinks[x];
+                weakest[b] = Math.min(weakest[b], classLinks[x]);
+            }
+            Arrays.sort(touched, 0, t);
+            for (int u = 0; u < t; u++) {
+                int b = touched[u], p = between.count++;
+                between.first[p] = a;
+                between.second[p] = b;
+                between.links[p] = sum[b];
+                between.classPairs[p] = pairs[b];
+                between.weakest[p] = weakest[b];
+                sum[b] = 0;
+                pairs[b] = 0;
+            }
+        }
+        return between;
+    }
+
+    private static int[] packageGroups(CouplingMatrix matrix) {
+        int[] group = new int[matrix.size()];
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < group.length; i++) {
+            String className = matrix.className(i);
+            int lastDot = className.lastIndexOf('.');
+            String packageName = lastDot > 0 ? className.substring(0, lastDot) : SymbolTable.DEFAULT_PACKAGE;
+            group[i] = ids.computeIfAbsent(packageName, name -> ids.size());
+        }
+        return group;
+    }
+
+    // Union-find over the coupled pairs; groups are numbered in order of their first class
+    private static int[] componentGroups(CouplingMatrix matrix) {
+        int n = matrix.size();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+        for (int i = 0; i < n; i++) {
+            for (int e = matrix.rowStart(i); e < matrix.rowEnd(i); e++) {
+                int a = find(parent, i), b = find(parent, matrix.neighbor(e));
+                if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+        int[] group = new int[n];
+        int[] id = new int[n];
+        Arrays.fill(id, -1);
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (id[root] < 0) id[root] = count++;
+            group[i] = id[root];
+        }
+        return group;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
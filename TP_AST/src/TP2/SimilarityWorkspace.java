@@ -0,0 +1,158 @@
+package TP2;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Upper triangle of a cluster-to-cluster table, one float per pair, addressed by a long slot and updated in
+// place. It lives on the heap while it fits there and is otherwise a memory-mapped temporary file, so tables
+// larger than the heap spill to disk and the OS pages them in and out. Every value starts at 0.
+abstract class SimilarityWorkspace implements AutoCloseable {
+
+    abstract float get(long slot);
+
+    abstract void set(long slot, float value);
+
+    @Override
+    public void close() {}
+
+    // On the heap when count floats fit in heapBudget bytes, otherwise in a file under spillDirectory
+    static SimilarityWorkspace allocate(long count, long heapBudget, String spillDirectory) {
+        if (count <= Integer.MAX_VALUE - 8 && count * Float.BYTES <= heapBudget) {
+            return new OnHeap((int) count);
+        }
+        try {
+            return new Mapped(count, Paths.get(spillDirectory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map a " + count * Float.BYTES + " byte HAC workspace", e);
+        }
+    }
+
+    private static final class OnHeap extends SimilarityWorkspace {
+        private final float[] values;
+
+        OnHeap(int count) {
+            values = new float[count];
+        }
+
+        @Override
+        float get(long slot) {
+            return values[(int) slot];
+        }
+
+        @Override
+        void set(long slot, float value) {
+            values[(int) slot] = value;
+        }
+    }
+
+    // A mapping is limited to 2 GB, so the file is mapped in chunks of 2^28 floats.
+    // A mapped file cannot be deleted on Windows until the JVM unmaps it, which only happens once the buffers
+    // are garbage collected. So the file is deleted as soon as the platform allows: right after mapping where
+    // that works, otherwise by a cleaner once the workspace is unreachable. Files a JVM left behind are
+    // deleted when the next workspace is mapped in the same directory.
+    private static final class Mapped extends SimilarityWorkspace {
+        private static final int CHUNK_SHIFT = 28;
+        private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+        private static final String PREFIX = "hac-workspace";
+        private static final String SUFFIX = ".bin";
+        private static final Cleaner CLEANER = Cleaner.create();
+        private static final Set<Path> SWEPT = ConcurrentHashMap.newKeySet();
+
+        private final Deletion deletion;
+        private final FloatBuffer[] chunks;
+
+        Mapped(long count, Path directory) throws IOException {
+            Files.createDirectories(directory);
+            if (SWEPT.add(directory.toAbsolutePath())) deleteStale(directory);
+            Path file = Files.createTempFile(directory, PREFIX, SUFFIX);
+            // the file is extended without writing, so the pages are zero until a value is set
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                long bytes = count * Float.BYTES;
+                raf.setLength(bytes);
+                FileChannel channel = raf.getChannel();
+                chunks = new FloatBuffer[(int) ((count + CHUNK_MASK) >>> CHUNK_SHIFT)];
+                for (int c = 0; c < chunks.length; c++) {
+                    long start = ((long) c << CHUNK_SHIFT) * Float.BYTES;
+                    long length = Math.min(bytes - start, (long) Float.BYTES << CHUNK_SHIFT);
+                    chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, start, length)
+                            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            deletion = new Deletion(file);
+            if (!deletion.attempt()) CLEANER.register(this, deletion);
+        }
+
+        // Workspaces of JVMs that died before their cleaner ran; one still mapped elsewhere on Windows
+        // cannot be deleted and is kept, and on other platforms its process keeps its mapping
+        private static void deleteStale(Path directory) {
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+                for (Path file : stale) new Deletion(file).attempt();
+            } catch (IOException e) {
+                // nothing to sweep then
+            }
+        }
+
+        @Override
+        float get(long slot) {
+            return chunks[(int) (slot >>> CHUNK_SHIFT)].get((int) slot & CHUNK_MASK);
+        }
+
+        @Override
+        void set(long slot, float value) {
+            chunks[(int) (slot >>> CHUNK_SHIFT)].put((int) slot & CHUNK_MASK, value);
+        }
+
+        // The mappings stay valid after the channel is closed and are released with the buffers, which
+        // become unreachable here even if the workspace itself does not
+        @Override
+        public void close() {
+            Arrays.fill(chunks, null);
+            deletion.attempt();
+        }
+    }
+
+    // Deletes a spill file, retrying for a while when run by the cleaner: the buffers' own cleaners unmap
+    // them in no set order with this one
+    private record Deletion(Path file) implements Runnable {
+        private static final int RETRIES = 20;
+        private static final long RETRY_MILLIS = 250;
+
+        boolean attempt() {
+            try {
+                Files.deleteIfExists(file);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int retry = 0; retry < RETRIES && !attempt(); retry++) {
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            // otherwise the next workspace mapped in the directory sweeps it
+            if (Files.exists(file)) file.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package TP2;
+
+import Parser.AnalysisCache;
+import Parser.Cancellation;
+import Parser.FileProcessor;
+import Parser.ProgressListener;
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.declaration.CtType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// On-disk extract of the Spoon call graph: for each source file, keyed by the SHA-256 of its content,
+// the top-level types it declares and their call rows. When every file matches no model is built at all;
+// otherwise Spoon only gets the changed files, the files calling into them, and the files both of these
+// called before, so the callees of the rebuilt files still resolve. The extract is discarded when the
+// Spoon version or the format changes.
+public class SpoonCallCache {
+    private static final int FORMAT_VERSION = 1;
+    // past this share of the tree a partial model costs about as much as a full one
+    private static final double FULL_BUILD_RATIO = 0.5;
+
+    private static class FileEntry implements Serializable {
+        private static final long serialVersionUID = 1L;
+        String contentHash;
+        ArrayList<String> types = new ArrayList<>();
+        ArrayList<String[]> rows = new ArrayList<>();
+    }
+
+    private static class Snapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+        int version = FORMAT_VERSION;
+        String spoonVersion;
+        HashMap<String, FileEntry> entries = new HashMap<>();
+    }
+
+    private final String projectSourcePath;
+    private final Path cacheFile;
+    private Snapshot snapshot;
+    private int typeCount;
+
+    private SpoonCallCache(String projectSourcePath, Path cacheFile, Snapshot snapshot) {
+        this.projectSourcePath = projectSourcePath;
+        this.cacheFile = cacheFile;
+        this.snapshot = snapshot;
+    }
+
+    public static SpoonCallCache load(String cacheDirectory, String projectSourcePath) {
+        String key = AnalysisCache.hash((new File(projectSourcePath).getAbsolutePath() + "\nspoon").getBytes(StandardCharsets.UTF_8));
+        Path cacheFile = Paths.get(cacheDirectory, key + ".ser");
+        Snapshot snapshot = null;
+        if (Files.isRegularFile(cacheFile)) {
+            try (InputStream in = Files.newInputStream(cacheFile);
+                 ObjectInputStream ois = new ObjectInputStream(in)) {
+                snapshot = (Snapshot) ois.readObject();
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                System.err.println("Ignoring unreadable Spoon cache " + cacheFile + ": " + e);
+            }
+        }
+        String spoonVersion = spoonVersion();
+        if (snapshot == null || snapshot.version != FORMAT_VERSION || !spoonVersion.equals(snapshot.spoonVersion)) {
+            snapshot = new Snapshot();
+            snapshot.spoonVersion = spoonVersion;
+        }
+        return new SpoonCallCache(projectSourcePath, cacheFile, snapshot);
+    }
+
+    private static String spoonVersion() {
+        String version = Launcher.class.getPackage().getImplementationVersion();
+        return version != null ? version : "unknown";
+    }
+
+    // Top-level types of the last extract; 0 means Spoon found no classes
+    public int getTypeCount() {
+        return typeCount;
+    }
+
+    // Brings the extract up to date with the source tree, saves it, and returns the call graph with the
+    // rows grouped by file in path order. Throws CancellationException once the thread is interrupted.
+    public CallGraph extract(int threadCount, ProgressListener progress) throws IOException {
+        File srcDir = new File(projectSourcePath);
+        if (!srcDir.isDirectory()) {
+            throw new IOException("Source path not found: " + projectSourcePath);
+        }
+
+        List<Path> javaFiles = FileProcessor.listJavaFiles(srcDir.toPath());
+        TreeMap<String, String> hashes = new TreeMap<>();
+        for (int i = 0; i < javaFiles.size(); i++) {
+            Cancellation.checkCancelled();
+            progress.onProgress("Hashing source files", i, javaFiles.size());
+            String path = javaFiles.get(i).normalize().toString();
+            hashes.put(path, AnalysisCache.hashFile(path));
+        }
+
+        Set<String> changed = new HashSet<>();
+        Set<String> touchedTypes = new HashSet<>();
+        for (Map.Entry<String, String> file : hashes.entrySet()) {
+            FileEntry cached = snapshot.entries.get(file.getKey());
+            if (cached == null || !file.getValue().equals(cached.contentHash)) {
+                changed.add(file.getKey());
+                if (cached != null) touchedTypes.addAll(cached.types);
+            }
+        }
+        for (Map.Entry<String, FileEntry> entry : snapshot.entries.entrySet()) {
+            if (!hashes.containsKey(entry.getKey())) touchedTypes.addAll(entry.getValue().types);
+        }
+
+        if (!changed.isEmpty() || snapshot.entries.size() != hashes.size()) {
+            Set<String> rebuilt = rebuildSet(hashes.keySet(), changed, touchedTypes);
+            Set<String> inputs = inputSet(hashes.keySet(), rebuilt);
+            boolean full = inputs.size() > hashes.size() * FULL_BUILD_RATIO;
+            if (full) rebuilt = hashes.keySet();
+
+            Cancellation.checkCancelled();
+            progress.onProgress("Building Spoon model (" + (full ? hashes.size() : inputs.size()) + " files)", 0, 0);
+            CtModel model = full ? SpoonCallExtractor.buildModel(projectSourcePath)
+                                 : SpoonCallExtractor.buildModel(new ArrayList<>(inputs));
+
+            Cancellation.checkCancelled();
+            progress.onProgress("Extracting method calls", 0, 0);
+            Snapshot updated = new Snapshot();
+            updated.spoonVersion = snapshot.spoonVersion;
+            for (String path : hashes.keySet()) {
+                if (rebuilt.contains(path)) {
+                    FileEntry entry = new FileEntry();
+                    entry.contentHash = hashes.get(path);
+                    updated.entries.put(path, entry);
+                } else {
+                    updated.entries.put(path, snapshot.entries.get(path));
+                }
+            }
+            List<CtType<?>> types = new ArrayList<>();
+            for (CtType<?> type : model.getAllTypes()) {
+                String path = sourceFile(type);
+                if (path != null && rebuilt.contains(path)) types.add(type);
+            }
+            List<List<String[]>> rows = SpoonCallExtractor.extractRows(types, threadCount);
+            for (int t = 0; t < types.size(); t++) {
+                FileEntry entry = updated.entries.get(sourceFile(types.get(t)));
+                entry.types.add(types.get(t).getQualifiedName());
+                entry.rows.addAll(rows.get(t));
+            }
+            progress.onProgress("Spoon cache: " + rebuilt.size() + " rebuilt (" + changed.size() + " changed), "
+                    + (hashes.size() - rebuilt.size()) + " reused, model of " + (full ? hashes.size() : inputs.size()) + " files", 0, 0);
+            snapshot = updated;
+            save();
+        }
+
+        List<List<String[]>> rows = new ArrayList<>();
+        typeCount = 0;
+        for (String path : hashes.keySet()) {
+            FileEntry entry = snapshot.entries.get(path);
+            typeCount += entry.types.size();
+            rows.add(entry.rows);
+        }
+        return SpoonCallExtractor.toCallGraph(rows);
+    }
+
+    // The changed files plus the unchanged files calling a type that a changed or deleted file declared
+    private Set<String> rebuildSet(Set<String> paths, Set<String> changed, Set<String> touchedTypes) {
+        Set<String> rebuilt = new HashSet<>(changed);
+        if (touchedTypes.isEmpty()) return rebuilt;
+        for (String path : paths) {
+            if (rebuilt.contains(path)) continue;
+            for (String type : calledTypes(snapshot.entries.get(path))) {
+                if (touchedTypes.contains(type)) {
+                    rebuilt.add(path);
+                    break;
+                }
+            }
+        }
+        return rebuilt;
+    }
+
+    // The rebuilt files plus the files in their directories and the files declaring a type they called,
+    // which Spoon needs to resolve the callees without a classpath
+    private Set<String> inputSet(Set<String> paths, Set<String> rebuilt) {
+        Map<String, String> typeFiles = new HashMap<>();
+        for (String path : paths) {
+            FileEntry entry = snapshot.entries.get(path);
+            if (entry == null) continue;
+            for (String type : entry.types) typeFiles.put(type, path);
+        }
+        Set<String> directories = new HashSet<>();
+        Set<String> inputs = new HashSet<>(rebuilt);
+        for (String path : rebuilt) {
+            directories.add(parentOf(path));
+            FileEntry entry = snapshot.entries.get(path);
+            if (entry == null) continue;
+            for (String type : calledTypes(entry)) {
+                String file = typeFiles.get(type);
+                if (file != null && paths.contains(file)) inputs.add(file);
+            }
+        }
+        for (String path : paths) {
+            if (directories.contains(parentOf(path))) inputs.add(path);
+        }
+        return inputs;
+    }
+
+    private static Set<String> calledTypes(FileEntry entry) {
+        Set<String> types = new HashSet<>();
+        if (entry == null) return types;
+        for (String[] row : entry.rows) {
+            for (int i = 1; i < row.length; i++) {
+                int lastDot = row[i].lastIndexOf('.');
+                if (lastDot > 0) types.add(row[i].substring(0, lastDot));
+            }
+        }
+        return types;
+    }
+
+    private static String parentOf(String path) {
+        Path parent = Paths.get(path).getParent();
+        return parent != null ? parent.toString() : "";
+    }
+
+    private static String sourceFile(CtType<?> type) {
+        SourcePosition position = type.getPosition();
+        if (!position.isValidPosition() || position.getFile() == null) return null;
+        return position.getFile().toPath().toAbsolutePath().normalize().toString();
+    }
+
+    private void save() throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp);
+             ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(snapshot);
+        }
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,146 @@
+package TP2;
+
+import Parser.Cancellation;
+import Parser.ParserConfig;
+import spoon.Launcher;
+import spoon.reflect.CtModel;
+import spoon.reflect.code.CtInvocation;
+import spoon.reflect.declaration.CtMethod;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.visitor.CtScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Spoon side of the analysis without any UI: builds the model of a source tree and extracts
+// the method call graph. Shared by SpoonAnalyzer and the headless batch runner.
+public class SpoonCallExtractor {
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Lean model: Spoon reads the files itself instead of holding a second copy of every source as a
+    // String, and comments and auto-imports, which only matter for printing code back, are left off.
+    public static CtModel buildModel(String src) throws IOException {
+        File srcDir = new File(src);
+        if (!srcDir.isDirectory()) {
+            throw new IOException("Source path not found: " + src);
+        }
+
+        Launcher launcher = newLauncher();
+        launcher.addInputResource(srcDir.getPath());
+        launcher.buildModel();
+        return launcher.getModel();
+    }
+
+    // Model of a subset of the source files, for SpoonCallCache
+    static CtModel buildModel(List<String> files) {
+        Launcher launcher = newLauncher();
+        for (String file : files) {
+            launcher.addInputResource(file);
+        }
+        launcher.buildModel();
+        return launcher.getModel();
+    }
+
+    private static Launcher newLauncher() {
+        Launcher launcher = new Launcher();
+        launcher.getEnvironment().setNoClasspath(true);
+        launcher.getEnvironment().setSourceClasspath(new String[0]);
+        launcher.getEnvironment().setComplianceLevel(17);
+        launcher.getEnvironment().setAutoImports(false);
+        launcher.getEnvironment().setCommentEnabled(false);
+        return launcher;
+    }
+
+    public static CallGraph extractCallGraph(CtModel model) {
+        return extractCallGraph(model, ParserConfig.THREAD_COUNT);
+    }
+
+    // Each method becomes a row of the graph, even when it calls nothing. The types are scanned in
+    // parallel chunks, one scanner walk per method, and merged in model order so the ids are stable.
+    public static CallGraph extractCallGraph(CtModel model, int threadCount) {
+        return toCallGraph(extractRows(new ArrayList<>(model.getAllTypes()), threadCount));
+    }
+
+    // One list of rows per type, in the order of types
+    static List<List<String[]>> extractRows(List<CtType<?>> types, int threadCount) {
+        List<List<String[]>> rows = new ArrayList<>(Collections.nCopies(types.size(), null));
+
+        if (threadCount <= 1 || types.size() < 2) {
+            scanTypes(types, 0, types.size(), rows);
+        } else {
+            int chunkSize = (int) Math.ceil(types.size() / (double) (threadCount * CHUNKS_PER_THREAD));
+            ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int start = 0; start < types.size(); start += chunkSize) {
+                    int from = start, to = Math.min(start + chunkSize, types.size());
+                    futures.add(pool.submit(() -> scanTypes(types, from, to, rows)));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Call extraction interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                Cancellation.shutdownAndWait(pool);
+            }
+        }
+
+        return rows;
+    }
+
+    static CallGraph toCallGraph(Iterable<List<String[]>> rows) {
+        CallGraph.Builder builder = new CallGraph.Builder(new SymbolTable());
+        for (List<String[]> typeRows : rows) {
+            for (String[] row : typeRows) {
+                int caller = builder.addCaller(row[0]);
+                for (int i = 1; i < row.length; i++) {
+                    builder.addCall(caller, builder.addMethod(row[i]));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // One row per method: the caller followed by its callees in source order
+    private static void scanTypes(List<CtType<?>> types, int from, int to, List<List<String[]>> rows) {
+        InvocationScanner scanner = new InvocationScanner();
+        for (int t = from; t < to; t++) {
+            CtType<?> type = types.get(t);
+            List<String[]> typeRows = new ArrayList<>();
+            for (CtMethod<?> m : type.getMethods()) {
+                scanner.callees.add(type.getQualifiedName() + "." + m.getSimpleName());
+                scanner.scan(m);
+                typeRows.add(scanner.callees.toArray(new String[0]));
+                scanner.callees.clear();
+            }
+            rows.set(t, typeRows);
+        }
+    }
+
+    // Collects every invocation under the scanned element, lambdas and local classes included
+    private static class InvocationScanner extends CtScanner {
+        final List<String> callees = new ArrayList<>();
+
+        @Override
+        public <T> void visitCtInvocation(CtInvocation<T> inv) {
+            var exec = inv.getExecutable();
+            if (exec != null && exec.getDeclaringType() != null) {
+                callees.add(exec.getDeclaringType().getQualifiedName() + "." + exec.getSimpleName());
+            }
+            super.visitCtInvocation(inv);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package TP2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Interns package, class and method names to dense int ids, so graphs can be stored as int arrays.
+// A method name "a.b.C.m" belongs to class "a.b.C", which belongs to package "a.b" ("[default]" without one).
+// Callees that could not be resolved ("[unresolved].m") belong to the UNRESOLVED pseudo-class.
+public class SymbolTable {
+    public static final String UNRESOLVED = "[unresolved]";
+    public static final String DEFAULT_PACKAGE = "[default]";
+
+    private final Map<String, Integer> packageIds = new HashMap<>();
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private final Map<String, Integer> methodIds = new HashMap<>();
+    private final List<String> packageNames = new ArrayList<>();
+    private final List<String> classNames = new ArrayList<>();
+    private final List<String> methodNames = new ArrayList<>();
+    private int[] classPackage = new int[16];
+    private int[] methodClass = new int[16];
+    private int unresolvedClass = -1;
+
+    public int packageId(String packageName) {
+        Integer id = packageIds.get(packageName);
+        if (id != null) return id;
+        int newId = packageNames.size();
+        packageIds.put(packageName, newId);
+        packageNames.add(packageName);
+        return newId;
+    }
+
+    public int classId(String className) {
+        Integer id = classIds.get(className);
+        if (id != null) return id;
+        int lastDot = className.lastIndexOf('.');
+        int packageId = packageId(lastDot > 0 ? className.substring(0, lastDot) : DEFAULT_PACKAGE);
+        int newId = classNames.size();
+        classIds.put(className, newId);
+        classNames.add(className);
+        if (newId == classPackage.length) classPackage = Arrays.copyOf(classPackage, newId * 2);
+        classPackage[newId] = packageId;
+        if (className.equals(UNRESOLVED)) unresolvedClass = newId;
+        return newId;
+    }
+
+    public int methodId(String methodName) {
+        Integer id = methodIds.get(methodName);
+        if (id != null) return id;
+        int lastDot = methodName.lastIndexOf('.');
+        // anonymous classes have an empty qualified name, so ".m" is a method of class ""
+        int classId = classId(lastDot >= 0 ? methodName.substring(0, lastDot) : "");
+        int newId = this.methodNames.size();
+        methodIds.put(methodName, newId);
+        this.methodNames.add(methodName);
+        if (newId == methodClass.length) methodClass = Arrays.copyOf(methodClass, newId * 2);
+        methodClass[newId] = classId;
+        return newId;
+    }
+
+    // -1 when the name was never interned
+    public int findMethod(String methodName) {
+        return methodIds.getOrDefault(methodName, -1);
+    }
+
+    public int findClass(String className) {
+        return classIds.getOrDefault(className, -1);
+    }
+
+    public int packageCount() { return packageNames.size(); }
+    public int classCount() { return classNames.size(); }
+    public int methodCount() { return methodNames.size(); }
+
+    public String packageName(int packageId) { return packageNames.get(packageId); }
+    public String className(int classId) { return classNames.get(classId); }
+    public String methodName(int methodId) { return methodNames.get(methodId); }
+
+    public int packageOfClass(int classId) { return classPackage[classId]; }
+    public int classOfMethod(int methodId) { return methodClass[methodId]; }
+
+    public boolean isUnresolved(int classId) {
+        return classId == unresolvedClass;
+    }
+}
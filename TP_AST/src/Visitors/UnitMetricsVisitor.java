@@ -0,0 +1,218 @@
+package Visitors;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.ThisExpression;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+// Single traversal that gathers what the class, method, attribute, invocation and
+// variable visitors used to collect in separate passes. Nested declarations are
+// credited to every enclosing type/method, like the per-node sub-visitors did.
+public class UnitMetricsVisitor extends ASTVisitor {
+
+    public static class TypeFacts {
+        public final String name;
+        public final List<MethodFacts> methods = new ArrayList<>();
+        public int attributeCount = 0;
+
+        TypeFacts(String name) {
+            this.name = name;
+        }
+    }
+
+    public static class MethodFacts {
+        public final String name;
+        public final int lineCount;
+        public final int parameterCount;
+        public final List<InvocationFacts> invocations = new ArrayList<>();
+        final StringBuilder variableLog = new StringBuilder();
+        final StringBuilder invocationLog = new StringBuilder();
+
+        MethodFacts(String name, int lineCount, int parameterCount) {
+            this.name = name;
+            this.lineCount = lineCount;
+            this.parameterCount = parameterCount;
+        }
+    }
+
+    // callee is "[unresolved].name" when no binding was found, and null for java.* targets.
+    // receiver is the call's target as written: null for an implicit this, "this", a (qualified)
+    // name such as a variable or a type, or "?" for any other expression
+    public static class InvocationFacts {
+        public final String name;
+        public final String callee;
+        public final boolean resolved;
+        public final String receiver;
+
+        InvocationFacts(String name, String callee, boolean resolved, String receiver) {
+            this.name = name;
+            this.callee = callee;
+            this.resolved = resolved;
+            this.receiver = receiver;
+        }
+    }
+
+    private final CompilationUnit compilationUnit;
+    private final String packageName;
+    private final boolean recordInvocations;
+    private final List<TypeFacts> types = new ArrayList<>();
+    private final List<MethodFacts> methods = new ArrayList<>();
+    private final Deque<TypeFacts> typeStack = new ArrayDeque<>();
+    private final Deque<MethodFacts> methodStack = new ArrayDeque<>();
+    private final StringBuilder methodLog = new StringBuilder();
+    private int classCount = 0;
+    private int attributeCount = 0;
+
+    public UnitMetricsVisitor(CompilationUnit compilationUnit, String packageName) {
+        this(compilationUnit, packageName, true);
+    }
+
+    // without invocations the call graph gets one empty entry per method and the invocation log stays empty
+    public UnitMetricsVisitor(CompilationUnit compilationUnit, String packageName, boolean recordInvocations) {
+        this.compilationUnit = compilationUnit;
+        this.packageName = packageName;
+        this.recordInvocations = recordInvocations;
+    }
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+        if (node.getParent() instanceof CompilationUnit) {
+            classCount++;
+        }
+        String className = node.getName().getFullyQualifiedName();
+        TypeFacts type = new TypeFacts(packageName.equals("[default]") ? className : packageName + "." + className);
+        types.add(type);
+        typeStack.push(type);
+        return true;
+    }
+
+    @Override
+    public void endVisit(TypeDeclaration node) {
+        typeStack.pop();
+    }
+
+    @Override
+    public boolean visit(EnumDeclaration node) {
+        if (node.getParent() instanceof CompilationUnit) {
+            classCount++;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean visit(FieldDeclaration node) {
+        attributeCount++;
+        for (TypeFacts type : typeStack) {
+            type.attributeCount++;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean visit(MethodDeclaration node) {
+        int startLine = compilationUnit.getLineNumber(node.getStartPosition());
+        int endLine = compilationUnit.getLineNumber(node.getStartPosition() + node.getLength());
+        MethodFacts method = new MethodFacts(node.getName().toString(), endLine - startLine + 1, node.parameters().size());
+        methods.add(method);
+        for (TypeFacts type : typeStack) {
+            type.methods.add(method);
+        }
+        methodLog.append("Method name: ").append(node.getName())
+                 .append(" Return type: ").append(node.getReturnType2()).append("\n");
+        methodStack.push(method);
+        return true;
+    }
+
+    @Override
+    public void endVisit(MethodDeclaration node) {
+        methodStack.pop();
+    }
+
+    @Override
+    public boolean visit(VariableDeclarationFragment node) {
+        for (MethodFacts method : methodStack) {
+            method.variableLog.append("variable name: ").append(node.getName())
+                              .append(" variable Initializer: ").append(node.getInitializer()).append("\n");
+        }
+        return true;
+    }
+
+    @Override
+    public boolean visit(MethodInvocation node) {
+        if (!recordInvocations || methodStack.isEmpty()) return true;
+
+        String calledMethodName = node.getName().toString();
+        String receiver = receiverOf(node.getExpression());
+        IMethodBinding binding = node.resolveMethodBinding();
+        InvocationFacts invocation;
+        if (binding != null && binding.getDeclaringClass() != null) {
+            String declaringClass = binding.getDeclaringClass().getQualifiedName();
+            invocation = new InvocationFacts(calledMethodName,
+                    declaringClass.startsWith("java.") ? null : declaringClass + "." + calledMethodName, true, receiver);
+        } else {
+            invocation = new InvocationFacts(calledMethodName, "[unresolved]." + calledMethodName, false, receiver);
+        }
+        for (MethodFacts method : methodStack) {
+            method.invocations.add(invocation);
+            method.invocationLog.append("method ").append(method.name)
+                                .append(" invoc method ").append(calledMethodName).append("\n");
+        }
+        return true;
+    }
+
+    private static String receiverOf(Expression expression) {
+        if (expression == null) return null;
+        if (expression instanceof ThisExpression) return "this";
+        if (expression instanceof Name) return ((Name) expression).getFullyQualifiedName();
+        return "?";
+    }
+
+    public int getClassCount() {
+        return classCount;
+    }
+
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    public List<TypeFacts> getTypes() {
+        return types;
+    }
+
+    public List<MethodFacts> getMethods() {
+        return methods;
+    }
+
+    public String getMethodLog() {
+        return methodLog.toString();
+    }
+
+    public String getVariableLog() {
+        StringBuilder sb = new StringBuilder();
+        for (MethodFacts method : methods) {
+            sb.append(method.variableLog);
+        }
+        return sb.toString();
+    }
+
+    public String getInvocationLog() {
+        StringBuilder sb = new StringBuilder();
+        for (MethodFacts method : methods) {
+            sb.append(method.invocationLog);
+        }
+        return sb.toString();
+    }
+}